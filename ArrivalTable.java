@@ -0,0 +1,164 @@
+package mmt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Earliest arrivals from one station at many others, found by a single search.
+ * Each arrival station has a row with the departure and arrival times, price and
+ * number of services of its earliest journey, kept in arrays, and the connections where
+ * each of its services is boarded and alighted; the itinerary of a row is only built
+ * when it is asked for.
+ */
+public class ArrivalTable {
+
+  private String _departureStation;
+  private LocalDate _date;
+  private LocalTime _departureTime;
+  private String[] _arrivalStations;
+
+  private int[] _departures;
+  private int[] _arrivals;
+  private double[] _prices;
+
+  /** Connection boarded and connection alighted of each leg of the journey of each row, in order
+   * of travel (null if the station can't be reached) */
+  private Connection[][] _journeys;
+
+  /** ArrivalTable Construtor, with every arrival station unreachable
+   * @param departureStation
+   * @param date
+   * @param departureTime
+   * @param arrivalStations (one row each, in this order)
+   */
+  ArrivalTable(String departureStation, LocalDate date, LocalTime departureTime, String[] arrivalStations){
+    _departureStation = departureStation;
+    _date = date;
+    _departureTime = departureTime;
+    _arrivalStations = arrivalStations.clone();
+    _departures = new int[arrivalStations.length];
+    _arrivals = new int[arrivalStations.length];
+    _prices = new double[arrivalStations.length];
+    _journeys = new Connection[arrivalStations.length][];
+    Arrays.fill(_arrivals, -1);
+  }
+
+  /** Fills the row of an arrival station that can be reached
+   * @param row
+   * @param departure (minutes since midnight)
+   * @param arrival (minutes since midnight)
+   * @param price
+   * @param journey (connection boarded and connection alighted of each leg, in order of travel)
+   */
+  void setRow(int row, int departure, int arrival, double price, Connection[] journey){
+    _departures[row] = departure;
+    _arrivals[row] = arrival;
+    _prices[row] = price;
+    _journeys[row] = journey;
+  }
+
+  public String getDepartureStation(){
+    return _departureStation;
+  }
+
+  public LocalDate getDate(){
+    return _date;
+  }
+
+  public LocalTime getDepartureTime(){
+    return _departureTime;
+  }
+
+  /** Number of rows, one for each arrival station */
+  public int size(){
+    return _arrivalStations.length;
+  }
+
+  public String getArrivalStation(int row){
+    return _arrivalStations[row];
+  }
+
+  public boolean isReachable(int row){
+    return _arrivals[row] >= 0;
+  }
+
+  /** Departure of the earliest journey of a row
+   * @param row
+   * @return int (minutes since midnight, or -1 if the station can't be reached)
+   */
+  public int getDepartureMinutes(int row){
+    return isReachable(row) ? _departures[row] : -1;
+  }
+
+  /** Earliest arrival of a row
+   * @param row
+   * @return int (minutes since midnight, or -1 if the station can't be reached)
+   */
+  public int getArrivalMinutes(int row){
+    return _arrivals[row];
+  }
+
+  public double getPrice(int row){
+    return _prices[row];
+  }
+
+  /** Number of services of the earliest journey of a row
+   * @param row
+   * @return int (0 if the station can't be reached)
+   */
+  public int getLegs(int row){
+    return isReachable(row) ? _journeys[row].length / 2 : 0;
+  }
+
+  /** Builds the itinerary of the earliest journey of a row
+   * @param row
+   * @return Itinerary, or null if the station can't be reached
+   */
+  public Itinerary getItinerary(int row){
+    if(!isReachable(row))
+      return null;
+    return ConnectionScan.buildsItinerary(_date, _journeys[row]);
+  }
+
+  /** Writes one line per arrival station: the station, the departure and arrival times,
+   * the price and the number of services, or "-" if it can't be reached
+   * @param out
+   * @throws IOException on error on writing
+   */
+  public void appendTo(Appendable out) throws IOException{
+    for(int row = 0; row < size(); row++){
+      if(row > 0)
+        out.append('\n');
+      out.append(_departureStation).append(' ').append(_arrivalStations[row]);
+      if(!isReachable(row)){
+        out.append(" -");
+        continue;
+      }
+      out.append(' ');
+      appendMinutes(out, _departures[row]);
+      out.append(' ');
+      appendMinutes(out, _arrivals[row]);
+      out.append(' ').append(String.format("%.2f", _prices[row])).append(' ').append(String.valueOf(getLegs(row)));
+    }
+  }
+
+  private static void appendMinutes(Appendable out, int minutes) throws IOException{
+    out.append((char) ('0' + minutes / 600)).append((char) ('0' + minutes / 60 % 10)).append(':')
+      .append((char) ('0' + minutes % 60 / 10)).append((char) ('0' + minutes % 10));
+  }
+
+  @Override
+  public String toString(){
+    StringBuilder table = new StringBuilder();
+    try{
+      appendTo(table);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    return table.toString();
+  }
+}
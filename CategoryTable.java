@@ -0,0 +1,83 @@
+package mmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tiers of passenger categories, ordered by the minimum value paid.
+ * A passenger is in the highest tier whose minimum is below the value paid,
+ * or in the lowest tier otherwise. New tiers are added by giving another table
+ * to setTable, without new classes.
+ */
+public class CategoryTable {
+
+  /** Table used by every passenger */
+  private static volatile CategoryTable _table =
+    new CategoryTable(Arrays.asList(CategoryType.NORMAL, CategoryType.FREQUENT, CategoryType.SPECIAL));
+
+  /** Tiers, from the lowest to the highest minimum value paid */
+  private List<CategoryType> _tiers;
+
+  /** CategoryTable Construtor
+   * @param tiers (categories, in any order)
+   * @throws IllegalArgumentException if there are no tiers
+   */
+  public CategoryTable(List<CategoryType> tiers){
+    if(tiers.isEmpty())
+      throw new IllegalArgumentException("A category table needs at least one tier");
+    List<CategoryType> sortedTiers = new ArrayList<CategoryType>(tiers);
+    Collections.sort(sortedTiers, new Comparator<CategoryType>(){
+      @Override
+      public int compare(CategoryType category1, CategoryType category2){
+        return Double.compare(category1.getMinimumPaidValue(), category2.getMinimumPaidValue());
+      }
+    });
+    _tiers = Collections.unmodifiableList(sortedTiers);
+  }
+
+  public static CategoryTable getTable(){
+    return _table;
+  }
+
+  /** Sets the table used to choose the category of the passengers from now on
+   * @param table
+   */
+  public static void setTable(CategoryTable table){
+    _table = table;
+  }
+
+  public List<CategoryType> getTiers(){
+    return _tiers;
+  }
+
+  public CategoryType getLowestTier(){
+    return _tiers.get(0);
+  }
+
+  /** Category of a passenger who paid a certain value
+   * @param paidValue
+   * @return CategoryType
+   */
+  public CategoryType getCategory(double paidValue){
+    for(int i = _tiers.size() - 1; i > 0; i--){
+      if(_tiers.get(i).appliesTo(paidValue))
+        return _tiers.get(i);
+    }
+    return _tiers.get(0);
+  }
+
+  /** Category with a certain name
+   * @param name
+   * @return CategoryType, or null if no tier has that name
+   */
+  public CategoryType getCategory(String name){
+    for(CategoryType category : _tiers){
+      if(category.getName().equals(name))
+        return category;
+    }
+    return null;
+  }
+}
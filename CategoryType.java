@@ -2,32 +2,68 @@ package mmt;
 
 import java.io.Serializable;
 
-public abstract class CategoryType implements Serializable{
+/**
+ * Category of a passenger, which decides the discount on the itineraries.
+ * Categories hold no state of their own: the same instance is shared by every
+ * passenger in it, and the category of each passenger is chosen from the
+ * CategoryTable by the value the passenger paid.
+ */
+public class CategoryType implements Serializable{
 
   /** Serial number for serialization. */
   private static final long serialVersionUID = 201708301010L;
 
-  private Passenger _passenger;
+  public static final CategoryType NORMAL = new CategoryType("NORMAL", 1.00, Double.NEGATIVE_INFINITY);
+  public static final CategoryType FREQUENT = new CategoryType("FREQUENTE", 0.85, 250);
+  public static final CategoryType SPECIAL = new CategoryType("ESPECIAL", 0.50, 2500);
 
-  /** Passenger Construtor
-   * @param passenger
+  private final String _name;
+  private final double _discount;
+
+  /** The category applies to passengers who paid more than this value */
+  private final double _minimumPaidValue;
+
+  /** CategoryType Construtor
+   * @param name
+   * @param discount (factor applied to the price of the itineraries)
+   * @param minimumPaidValue (the category applies to passengers who paid more than this)
    */
-  public CategoryType(Passenger passenger){
-    _passenger = passenger;
+  public CategoryType(String name, double discount, double minimumPaidValue){
+    _name = name;
+    _discount = discount;
+    _minimumPaidValue = minimumPaidValue;
+  }
+
+  public String getName(){
+    return _name;
+  }
+
+  public double getDiscount(){
+    return _discount;
   }
 
-  public Passenger getPassenger(){
-    return _passenger;
+  public double getMinimumPaidValue(){
+    return _minimumPaidValue;
   }
 
-  public abstract double getDiscount();
+  /** Checks if the category applies to a passenger who paid a certain value
+   * @param paidValue
+   * @return boolean
+   */
+  public boolean appliesTo(double paidValue){
+    return paidValue > _minimumPaidValue;
+  }
+
+  @Override
+  public String toString(){
+    return _name;
+  }
 
-  public void testState(){
-    if(_passenger.getPaidValue() > 250 && _passenger.getPaidValue() <= 2500)
-      _passenger.setCategory(new FrequentCategory(_passenger));
-    else if(_passenger.getPaidValue() > 2500)
-      _passenger.setCategory(new SpecialCategory(_passenger));
-    else
-      _passenger.setCategory(new NormalCategory(_passenger));
+  /** Replaces a deserialized category by the shared one with the same name */
+  protected Object readResolve(){
+    CategoryType category = CategoryTable.getTable().getCategory(_name);
+    if(category == null)
+      return this;
+    return category;
   }
 }
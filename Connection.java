@@ -0,0 +1,78 @@
+package mmt;
+
+/**
+ * An elementary connection: a train of a service going from one stop
+ * to the next one without stopping in between.
+ */
+public class Connection implements Comparable<Connection>{
+
+  private Service _service;
+  private int _trip;
+  private int _departureIndex;
+  private int _departureStation;
+  private int _arrivalStation;
+  private int _departureTime;
+  private int _arrivalTime;
+
+  /** Connection Construtor
+   * @param service
+   * @param trip (index of the service inside the connection scan)
+   * @param departureIndex (index of the departure within the service)
+   * @param departureStation
+   * @param arrivalStation
+   * @param departureTime (minutes since midnight)
+   * @param arrivalTime (minutes since midnight)
+   */
+  public Connection(Service service, int trip, int departureIndex, int departureStation, int arrivalStation, int departureTime, int arrivalTime){
+    _service = service;
+    _trip = trip;
+    _departureIndex = departureIndex;
+    _departureStation = departureStation;
+    _arrivalStation = arrivalStation;
+    _departureTime = departureTime;
+    _arrivalTime = arrivalTime;
+  }
+
+  public Service getService(){
+    return _service;
+  }
+
+  public int getTrip(){
+    return _trip;
+  }
+
+  public int getDepartureIndex(){
+    return _departureIndex;
+  }
+
+  public int getArrivalIndex(){
+    return _departureIndex + 1;
+  }
+
+  public int getDepartureStation(){
+    return _departureStation;
+  }
+
+  public int getArrivalStation(){
+    return _arrivalStation;
+  }
+
+  public int getDepartureTime(){
+    return _departureTime;
+  }
+
+  public int getArrivalTime(){
+    return _arrivalTime;
+  }
+
+  @Override
+  public int compareTo(Connection connection){
+    if(_departureTime != connection.getDepartureTime())
+      return Integer.compare(_departureTime, connection.getDepartureTime());
+    if(_arrivalTime != connection.getArrivalTime())
+      return Integer.compare(_arrivalTime, connection.getArrivalTime());
+    if(_trip != connection.getTrip())
+      return Integer.compare(_trip, connection.getTrip());
+    return Integer.compare(_departureIndex, connection.getDepartureIndex());
+  }
+}
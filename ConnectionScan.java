@@ -0,0 +1,282 @@
+package mmt;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Earliest arrival search engine based on the Connection Scan Algorithm.
+ * Every pair of consecutive departures of every service becomes a connection,
+ * and all the connections are kept in one array sorted by departure time,
+ * so a query is answered with a single pass over that array.
+ */
+public class ConnectionScan {
+
+  /** Value used for stations that have not been reached yet */
+  private static final int UNREACHED = Integer.MAX_VALUE;
+
+  /** Every connection of the timetable, sorted by departure time */
+  private Connection[] _connections;
+
+  /** Registry with the identifiers of the stations */
+  private StationRegistry _stations;
+
+  /** Number of stations registered when the connections were built */
+  private int _numberOfStations;
+
+  /** Number of services (trips) indexed */
+  private int _numberOfTrips;
+
+  /** ConnectionScan Construtor
+   * @param services (services from which the connections are built)
+   * @param stations (registry with the stations of those services)
+   */
+  public ConnectionScan(Collection<Service> services, StationRegistry stations){
+    _stations = stations;
+    _numberOfStations = stations.size();
+    List<Connection> connections = new ArrayList<Connection>();
+    for(Service service : services){
+      for(int i = 0; i < service.getNumberOfDepartures() - 1; i++){
+        connections.add(new Connection(service, _numberOfTrips, i, service.getStationID(i),
+          service.getStationID(i+1), service.getMinutes(i), service.getMinutes(i+1)));
+      }
+      _numberOfTrips++;
+    }
+    _connections = connections.toArray(new Connection[connections.size()]);
+    Arrays.sort(_connections);
+  }
+
+  /** Index of the first connection departing strictly after a certain time
+   * @param time (minutes since midnight)
+   * @return int index within the connections array
+   */
+  private int firstConnectionAfter(int time){
+    int low = 0;
+    int high = _connections.length;
+    while(low < high){
+      int middle = (low + high) >>> 1;
+      if(_connections[middle].getDepartureTime() <= time)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /** Finds the itinerary which arrives the earliest at the arrivalStation,
+  * leaving the departureStation after the departureTime.
+  * Changing trains requires the next service to leave after the arrival of the previous one.
+  * @param origin (identifier of the departure station)
+  * @param target (identifier of the arrival station)
+  * @param date
+  * @param departureTime (minutes since midnight)
+  * @return Itinerary with the earliest arrival, or null if the arrivalStation can't be reached
+  */
+  public Itinerary earliestArrival(int origin, int target, LocalDate date, int departureTime){
+    if(origin < 0 || target < 0 || origin >= _numberOfStations || target >= _numberOfStations || origin == target)
+      return null;
+
+    Connection[] journeyStart = new Connection[_numberOfStations];
+    Connection[] journeyEnd = new Connection[_numberOfStations];
+    int[] earliest = scan(origin, new int[]{ target }, departureTime, journeyStart, journeyEnd);
+    if(earliest[target] == UNREACHED)
+      return null;
+    return buildsItinerary(date, journey(origin, target, journeyStart, journeyEnd));
+  }
+
+  /** Finds the earliest arrival at each of the arrivalStations, leaving the departureStation
+  * after the departureTime, with a single pass over the connections for all of them
+  * @param departureStation
+  * @param arrivalStations
+  * @param date
+  * @param departureTime
+  * @return ArrivalTable with a row for each arrival station, in the same order
+  */
+  public ArrivalTable earliestArrivals(String departureStation, String[] arrivalStations, LocalDate date, LocalTime departureTime){
+    int origin = _stations.getID(departureStation);
+    int[] targets = new int[arrivalStations.length];
+    for(int i = 0; i < targets.length; i++){
+      targets[i] = _stations.getID(arrivalStations[i]);
+    }
+    Connection[] journeyStart = new Connection[_numberOfStations];
+    Connection[] journeyEnd = new Connection[_numberOfStations];
+    int[] earliest = null;
+    if(origin >= 0 && origin < _numberOfStations)
+      earliest = scan(origin, targets, departureTime.toSecondOfDay() / 60, journeyStart, journeyEnd);
+
+    ArrivalTable table = new ArrivalTable(departureStation, date, departureTime, arrivalStations);
+    for(int i = 0; i < targets.length; i++){
+      int target = targets[i];
+      if(earliest == null || target < 0 || target >= _numberOfStations || target == origin || earliest[target] == UNREACHED)
+        continue;
+      Connection[] journey = journey(origin, target, journeyStart, journeyEnd);
+      double price = 0;
+      for(int j = 0; j < journey.length; j += 2){
+        price += journey[j].getService().segmentPrice(journey[j].getDepartureIndex(), journey[j+1].getArrivalIndex());
+      }
+      table.setRow(i, journey[0].getDepartureTime(), earliest[target], price, journey);
+    }
+    return table;
+  }
+
+  /** Finds the earliest arrivals from each of the departureStations at each of the arrivalStations,
+  * with a single pass over the connections for each departure station
+  * @param departureStations
+  * @param arrivalStations
+  * @param date
+  * @param departureTime
+  * @param pool (in which the departure stations are searched in parallel, or null)
+  * @return List with an ArrivalTable for each departure station, in the same order
+  */
+  public List<ArrivalTable> earliestArrivals(final String[] departureStations, final String[] arrivalStations,
+    final LocalDate date, final LocalTime departureTime, ForkJoinPool pool){
+    final ArrivalTable[] tables = new ArrivalTable[departureStations.length];
+    if(pool == null || departureStations.length < 2){
+      for(int i = 0; i < tables.length; i++){
+        tables[i] = earliestArrivals(departureStations[i], arrivalStations, date, departureTime);
+      }
+    }
+    else{
+      final List<RecursiveAction> searches = new ArrayList<RecursiveAction>(tables.length);
+      for(int i = 0; i < tables.length; i++){
+        final int row = i;
+        searches.add(new RecursiveAction(){
+          @Override
+          protected void compute(){
+            tables[row] = earliestArrivals(departureStations[row], arrivalStations, date, departureTime);
+          }
+        });
+      }
+      pool.invoke(new RecursiveAction(){
+        @Override
+        protected void compute(){
+          invokeAll(searches);
+        }
+      });
+    }
+    return Arrays.asList(tables);
+  }
+
+  /** Scans the connections once, finding the earliest arrival at every station until
+  * the targets can't be reached any sooner
+  * @param origin (identifier of the departure station)
+  * @param targets (identifiers of the arrival stations; unknown ones are ignored)
+  * @param departureTime (minutes since midnight)
+  * @param journeyStart (filled with the connection boarded to reach each station)
+  * @param journeyEnd (filled with the connection which reaches each station)
+  * @return int[] with the earliest arrival at each station, or UNREACHED
+  */
+  private int[] scan(int origin, int[] targets, int departureTime, Connection[] journeyStart, Connection[] journeyEnd){
+    int[] earliest = new int[_numberOfStations];
+    Arrays.fill(earliest, UNREACHED);
+    Connection[] tripBoarding = new Connection[_numberOfTrips];
+    earliest[origin] = departureTime;
+
+    boolean[] isTarget = new boolean[_numberOfStations];
+    int unreached = 0;
+    for(int target : targets){
+      if(target >= 0 && target < _numberOfStations && target != origin && !isTarget[target]){
+        isTarget[target] = true;
+        unreached++;
+      }
+    }
+    int bound = UNREACHED;
+
+    for(int i = firstConnectionAfter(departureTime); i < _connections.length; i++){
+      Connection connection = _connections[i];
+      if(connection.getDepartureTime() >= bound)
+        break;
+      Connection boarding = tripBoarding[connection.getTrip()];
+      if(boarding == null && connection.getDepartureTime() > earliest[connection.getDepartureStation()]){
+        boarding = connection;
+        tripBoarding[connection.getTrip()] = connection;
+      }
+      int station = connection.getArrivalStation();
+      if(boarding != null && connection.getArrivalTime() < earliest[station]){
+        if(isTarget[station] && earliest[station] == UNREACHED)
+          unreached--;
+        earliest[station] = connection.getArrivalTime();
+        journeyStart[station] = boarding;
+        journeyEnd[station] = connection;
+        if(isTarget[station] && unreached == 0)
+          bound = latestArrival(earliest, isTarget, targets);
+      }
+    }
+    return earliest;
+  }
+
+  /** Latest of the earliest arrivals at the targets, after which no connection can improve them */
+  private static int latestArrival(int[] earliest, boolean[] isTarget, int[] targets){
+    int latest = 0;
+    for(int target : targets){
+      if(target >= 0 && target < isTarget.length && isTarget[target])
+        latest = Math.max(latest, earliest[target]);
+    }
+    return latest;
+  }
+
+  /** Journey to a station reached by scan, following the connections back to the origin
+  * @param origin
+  * @param target
+  * @param journeyStart
+  * @param journeyEnd
+  * @return Connection[] with the connection boarded and the connection alighted of each leg, in order of travel
+  */
+  private static Connection[] journey(int origin, int target, Connection[] journeyStart, Connection[] journeyEnd){
+    int legs = 0;
+    for(int station = target; station != origin; station = journeyStart[station].getDepartureStation()){
+      legs++;
+    }
+    Connection[] journey = new Connection[2*legs];
+    int station = target;
+    for(int i = legs - 1; i >= 0; i--){
+      journey[2*i] = journeyStart[station];
+      journey[2*i+1] = journeyEnd[station];
+      station = journeyStart[station].getDepartureStation();
+    }
+    return journey;
+  }
+
+  /** Builds the itinerary of a journey
+  * @param date
+  * @param journey (connection boarded and connection alighted of each leg, in order of travel)
+  * @return Itinerary
+  */
+  static Itinerary buildsItinerary(LocalDate date, Connection[] journey){
+    Itinerary itinerary = new Itinerary(date);
+    for(int i = 0; i < journey.length; i += 2){
+      itinerary.addLeg(journey[i].getService(), journey[i].getDepartureIndex(), journey[i+1].getArrivalIndex());
+    }
+    return itinerary;
+  }
+
+  /** Finds, for the rest of the day, the itineraries from the departureStation to the arrivalStation.
+  * Each option is the earliest arrival for a later departure than the previous one, and
+  * options arriving no sooner than a later departing one are discarded.
+  * @param departureStation
+  * @param arrivalStation
+  * @param date
+  * @param departureTime
+  * @return List of itineraries sorted by time of departure
+  */
+  public List<Itinerary> search(String departureStation, String arrivalStation, LocalDate date, LocalTime departureTime){
+    List<Itinerary> itineraries = new ArrayList<Itinerary>();
+    int origin = _stations.getID(departureStation);
+    int target = _stations.getID(arrivalStation);
+    Itinerary itinerary = earliestArrival(origin, target, date, departureTime.toSecondOfDay() / 60);
+    while(itinerary != null){
+      int last = itineraries.size() - 1;
+      if(last >= 0 && itineraries.get(last).getArrivalMinutes() >= itinerary.getArrivalMinutes())
+        itineraries.remove(last);
+      itineraries.add(itinerary);
+      itinerary = earliestArrival(origin, target, date, itinerary.getStartMinutes());
+    }
+    return itineraries;
+  }
+}
@@ -1,6 +1,8 @@
 package mmt;
 
 import java.time.LocalTime;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,31 +15,77 @@ public class Departure implements Serializable{
   private LocalTime _departureTime;
   private String _station;
 
+  /** Identifier of the station in the company's StationRegistry */
+  private int _stationID;
+
+  /** Departure time as minutes since midnight */
+  private int _minutes;
+
   /** Departure Construtor
    * @param departuretime
    * @param station
+   * @param stationID
    */
-  public Departure(LocalTime departuretime, String station){
+  public Departure(LocalTime departuretime, String station, int stationID){
     _station = station;
-    _departureTime = departuretime;
+    _stationID = stationID;
+    setDepartureTime(departuretime);
   }
 
-  public void setStation(String station){
+  public void setStation(String station, int stationID){
     _station = station;
+    _stationID = stationID;
   }
   
   public void setDepartureTime(LocalTime departuretime){
     _departureTime = departuretime;
+    _minutes = departuretime.toSecondOfDay() / 60;
   }
 
   public String getStation(){
     return _station;
   }
 
+  public int getStationID(){
+    return _stationID;
+  }
+
   public LocalTime getDepartureTime(){
     return _departureTime;
   }
 
+  public int getMinutes(){
+    return _minutes;
+  }
+
+  /** Departures are equal when they are at the same station at the same time */
+  @Override
+  public boolean equals(Object object){
+    if(!(object instanceof Departure))
+      return false;
+    Departure departure = (Departure) object;
+    return _stationID == departure.getStationID() && _minutes == departure.getMinutes();
+  }
+
+  @Override
+  public int hashCode(){
+    return 31 * _stationID + _minutes;
+  }
+
+  /** Reads a departure, deriving the minutes of the departures saved before they were kept.
+   * Those departures have no station identifier (-1), so they are found by name.
+   * @param in
+   * @throws IOException on error on reading
+   * @throws ClassNotFoundException if a class of the departure isn't found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+    ObjectInputStream.GetField fields = in.readFields();
+    _departureTime = (LocalTime) fields.get("_departureTime", null);
+    _station = (String) fields.get("_station", null);
+    _stationID = fields.defaulted("_stationID") ? -1 : fields.get("_stationID", -1);
+    _minutes = _departureTime == null ? 0 : _departureTime.toSecondOfDay() / 60;
+  }
+
   @Override
   @SuppressWarnings("nls")
   public String toString(){
@@ -5,6 +5,6 @@ import java.util.Comparator;
 public class DepartureComparator implements Comparator<Service>{
   @Override
   public int compare(Service service1, Service service2){
-    return service1.getDepartureStation().getDepartureTime().compareTo(service2.getDepartureStation().getDepartureTime());
+    return Integer.compare(service1.getDepartureMinutes(), service2.getDepartureMinutes());
   }
 }
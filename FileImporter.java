@@ -0,0 +1,313 @@
+package mmt;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import mmt.exceptions.ImportFileException;
+import mmt.exceptions.NonUniquePassengerNameException;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Imports a file with passengers, services and itineraries into a train company
+ * using every core.
+ * The file is read in chunks of lines, and each chunk is parsed in parallel while
+ * the next ones are read. Passengers and services are registered in file order, as
+ * soon as their chunk is parsed, and so are the passenger and services of each itinerary
+ * found. Only adding the itineraries to their passengers is left for a second phase, in
+ * parallel for different passengers and in file order for each passenger, which also
+ * runs when a line fails. The final state is the same as reading the lines one by one.
+ */
+public class FileImporter {
+
+  /** Number of lines parsed by each task */
+  private static final int CHUNK_LINES = 4096;
+
+  private TrainCompany _company;
+
+  /** FileImporter Construtor
+   * @param company (the train company receiving the imported entries)
+   */
+  public FileImporter(TrainCompany company){
+    _company = company;
+  }
+
+  /** Imports a file with passengers, services and itineraries
+   * @param filename
+   * @throws IOException on error on reading the file
+   * @throws NonUniquePassengerNameException if a passenger name is repeated
+   * @throws ImportFileException if an itinerary doesn't match the passengers and services
+   */
+  public void importFile(String filename) throws IOException, NonUniquePassengerNameException, ImportFileException{
+    Deque<Future<List<ParsedLine>>> chunks = new ArrayDeque<Future<List<ParsedLine>>>();
+    // enough chunks to keep every core parsing, without reading the whole file ahead of the registering
+    int maxChunks = Math.max(2, 2 * ForkJoinPool.commonPool().getParallelism());
+    Map<Passenger, List<Itinerary>> itineraries = new LinkedHashMap<Passenger, List<Itinerary>>();
+    try{
+      try(BufferedReader reader = new BufferedReader(new FileReader(filename))){
+        List<String> lines = new ArrayList<String>(CHUNK_LINES);
+        String line;
+        while((line = reader.readLine()) != null){
+          lines.add(line);
+          if(lines.size() == CHUNK_LINES){
+            chunks.addLast(parseInBackground(lines));
+            lines = new ArrayList<String>(CHUNK_LINES);
+            while(!chunks.isEmpty() && (chunks.size() >= maxChunks || chunks.peekFirst().isDone())){
+              register(await(chunks.pollFirst()), itineraries);
+            }
+          }
+        }
+        chunks.addLast(parseInBackground(lines));
+      }
+      while(!chunks.isEmpty()){
+        register(await(chunks.pollFirst()), itineraries);
+      }
+    }
+    finally{
+      for(Future<List<ParsedLine>> chunk : chunks){
+        chunk.cancel(true);
+      }
+      // the itineraries before a line which fails are kept, as when reading the lines one by one
+      addItineraries(itineraries);
+    }
+  }
+
+  /** Adds the itineraries of each passenger in a task of its own
+   * @param itineraries (itineraries of each passenger, in file order)
+   * @throws IOException if interrupted
+   */
+  private void addItineraries(Map<Passenger, List<Itinerary>> itineraries) throws IOException, ImportFileException{
+    Deque<Future<Void>> tasks = new ArrayDeque<Future<Void>>();
+    try{
+      for(final Map.Entry<Passenger, List<Itinerary>> passengerItineraries : itineraries.entrySet()){
+        tasks.addLast(ForkJoinPool.commonPool().submit(new Callable<Void>(){
+          @Override
+          public Void call(){
+            for(Itinerary itinerary : passengerItineraries.getValue()){
+              _company.addItinerary(passengerItineraries.getKey(), itinerary);
+            }
+            return null;
+          }
+        }));
+      }
+      while(!tasks.isEmpty()){
+        await(tasks.peekFirst());
+        tasks.pollFirst();
+      }
+    }
+    finally{
+      for(Future<Void> task : tasks){
+        task.cancel(true);
+      }
+    }
+  }
+
+  private Future<List<ParsedLine>> parseInBackground(final List<String> lines){
+    return ForkJoinPool.commonPool().submit(new Callable<List<ParsedLine>>(){
+      @Override
+      public List<ParsedLine> call(){
+        List<ParsedLine> parsed = new ArrayList<ParsedLine>(lines.size());
+        for(String line : lines){
+          ParsedLine parsedLine = parse(line);
+          if(parsedLine != null)
+            parsed.add(parsedLine);
+        }
+        return parsed;
+      }
+    });
+  }
+
+  private <T> T await(Future<T> task) throws IOException, ImportFileException{
+    try{
+      return task.get();
+    }
+    catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    catch(ExecutionException e){
+      // the common pool wraps the checked exceptions of its tasks in runtime exceptions
+      for(Throwable cause = e.getCause(); cause != null; cause = cause.getCause()){
+        if(cause instanceof ImportFileException)
+          throw (ImportFileException) cause;
+      }
+      if(e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      if(e.getCause() instanceof Error)
+        throw (Error) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** Registers the passengers and services of a chunk and sets its itineraries aside,
+   * built on the services registered so far
+   * @param lines (parsed lines of the chunk)
+   * @param itineraries (itineraries of each passenger, in file order)
+   * @throws NonUniquePassengerNameException if a passenger name is repeated
+   * @throws ImportFileException if an itinerary doesn't match the passengers and services
+   */
+  private void register(List<ParsedLine> lines, Map<Passenger, List<Itinerary>> itineraries)
+      throws NonUniquePassengerNameException, ImportFileException{
+    for(ParsedLine line : lines){
+      if(line instanceof PassengerLine){
+        _company.registerPassenger(((PassengerLine) line)._name);
+      }
+      else if(line instanceof ServiceLine){
+        ServiceLine service = (ServiceLine) line;
+        _company.registerService(service._serviceID, service._price, service._stations, service._minutes);
+      }
+      else{
+        ItineraryLine itinerary = (ItineraryLine) line;
+        Passenger passenger = _company.importedPassenger(itinerary._passengerID);
+        List<Itinerary> passengerItineraries = itineraries.get(passenger);
+        if(passengerItineraries == null){
+          passengerItineraries = new ArrayList<Itinerary>();
+          itineraries.put(passenger, passengerItineraries);
+        }
+        passengerItineraries.add(_company.importedItinerary(itinerary._date, itinerary._serviceIDs,
+          itinerary._departureStations, itinerary._arrivalStations));
+      }
+    }
+  }
+
+  /** Parses one line of the import file
+   * @param line
+   * @return ParsedLine, or null if the line isn't a passenger, service or itinerary
+   */
+  private static ParsedLine parse(String line){
+    String[] fields = split(line, '|');
+    if(fields[0].equals("PASSENGER")){
+      return new PassengerLine(fields[1]);
+    }
+    else if(fields[0].equals("SERVICE")){
+      int numberOfDepartures = (fields.length - 3) / 2;
+      String[] stations = new String[numberOfDepartures];
+      int[] minutes = new int[numberOfDepartures];
+      for(int i = 0; i < numberOfDepartures; i++){
+        minutes[i] = parseMinutes(fields[3 + 2*i]);
+        stations[i] = fields[4 + 2*i];
+      }
+      return new ServiceLine(Integer.parseInt(fields[1]), Double.parseDouble(fields[2]), stations, minutes);
+    }
+    else if(fields[0].equals("ITINERARY")){
+      int numberOfLegs = fields.length - 3;
+      int[] serviceIDs = new int[numberOfLegs];
+      String[] departureStations = new String[numberOfLegs];
+      String[] arrivalStations = new String[numberOfLegs];
+      for(int i = 0; i < numberOfLegs; i++){
+        String[] leg = split(fields[3 + i], '/');
+        serviceIDs[i] = Integer.parseInt(leg[0]);
+        departureStations[i] = leg[1];
+        arrivalStations[i] = leg[2];
+      }
+      return new ItineraryLine(Integer.parseInt(fields[1]), LocalDate.parse(fields[2]), serviceIDs, departureStations, arrivalStations);
+    }
+    return null;
+  }
+
+  /** Splits a line by a separator, without regular expressions.
+   * Like String.split, trailing empty fields are removed.
+   * @param line
+   * @param separator
+   * @return String[] with the fields of the line
+   */
+  public static String[] split(String line, char separator){
+    int length = line.length();
+    while(length > 0 && line.charAt(length - 1) == separator){
+      length--;
+    }
+    int count = 1;
+    for(int i = 0; i < length; i++){
+      if(line.charAt(i) == separator)
+        count++;
+    }
+    String[] fields = new String[count];
+    int start = 0;
+    int field = 0;
+    for(int i = 0; i < length; i++){
+      if(line.charAt(i) == separator){
+        fields[field++] = line.substring(start, i);
+        start = i + 1;
+      }
+    }
+    fields[field] = line.substring(start, length);
+    return fields;
+  }
+
+  /** Parses a time of the day in minutes since midnight, with a fast path for HH:mm
+   * @param time
+   * @return int
+   */
+  public static int parseMinutes(String time){
+    if(time.length() == 5 && time.charAt(2) == ':'){
+      int hours = digit(time, 0) * 10 + digit(time, 1);
+      int minutes = digit(time, 3) * 10 + digit(time, 4);
+      if(hours >= 0 && hours < 24 && minutes >= 0 && minutes < 60)
+        return hours * 60 + minutes;
+    }
+    return LocalTime.parse(time).toSecondOfDay() / 60;
+  }
+
+  private static int digit(String text, int index){
+    char c = text.charAt(index);
+    if(c < '0' || c > '9')
+      return -100;
+    return c - '0';
+  }
+
+  /** A line of the import file, already parsed */
+  private static abstract class ParsedLine {
+  }
+
+  private static class PassengerLine extends ParsedLine {
+    private String _name;
+
+    PassengerLine(String name){
+      _name = name;
+    }
+  }
+
+  private static class ServiceLine extends ParsedLine {
+    private int _serviceID;
+    private double _price;
+    private String[] _stations;
+    private int[] _minutes;
+
+    ServiceLine(int serviceID, double price, String[] stations, int[] minutes){
+      _serviceID = serviceID;
+      _price = price;
+      _stations = stations;
+      _minutes = minutes;
+    }
+  }
+
+  private static class ItineraryLine extends ParsedLine {
+    private int _passengerID;
+    private LocalDate _date;
+    private int[] _serviceIDs;
+    private String[] _departureStations;
+    private String[] _arrivalStations;
+
+    ItineraryLine(int passengerID, LocalDate date, int[] serviceIDs, String[] departureStations, String[] arrivalStations){
+      _passengerID = passengerID;
+      _date = date;
+      _serviceIDs = serviceIDs;
+      _departureStations = departureStations;
+      _arrivalStations = arrivalStations;
+    }
+  }
+}
@@ -2,25 +2,23 @@ package mmt;
 
 import java.io.Serializable;
 
+/**
+ * Only kept to read files saved with Java serialization, which have one
+ * category object per passenger; it is replaced by CategoryType.FREQUENT.
+ * @deprecated categories are now the shared instances of CategoryType
+ */
+@Deprecated
 public class FrequentCategory extends CategoryType implements Serializable{
 
   /** Serial number for serialization. */
   private static final long serialVersionUID = 201708301010L;
 
-  /** Passenger Construtor
-   * @param passenger
-   */
-  public FrequentCategory(Passenger passenger){
-    super(passenger);
+  private FrequentCategory(){
+    super(CategoryType.FREQUENT.getName(), CategoryType.FREQUENT.getDiscount(), CategoryType.FREQUENT.getMinimumPaidValue());
   }
 
   @Override
-  public double getDiscount(){
-    return 0.85;
-  }
-
-  @Override
-  public String toString(){
-    return "FREQUENTE";
+  protected Object readResolve(){
+    return CategoryType.FREQUENT;
   }
 }
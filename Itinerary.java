@@ -1,118 +1,225 @@
 package mmt;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.time.LocalTime;
 import java.time.LocalDate;
 import java.time.Duration;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 
 public class Itinerary implements Serializable, Comparable<Itinerary>{
 
   /** Serial number for serialization. */
   private static final long serialVersionUID = 201708301010L;
 
-  private LocalDate _date;
-  private double _itineraryPrice;
-  private Duration _duration;
-  private List<Service> _services = new ArrayList<Service>();
-  private List<Departure> _itineraryDepartures = new ArrayList<Departure>();
+  /** Date of the itinerary, in days since the epoch */
+  private int _day;
+
+  /** Service of each leg */
+  private Service[] _legServices = new Service[0];
+
+  /** Departure and arrival position, within its service, of each leg */
+  private int[] _legStops = new int[0];
+
+  /** Price, computed the first time it is needed (NaN until then) */
+  private transient volatile double _itineraryPrice = Double.NaN;
 
   /** Itinerary Construtor
    * @param date
    */
   public Itinerary(LocalDate date){
-    _date = date;
-    _duration = Duration.parse("PT0H0M");
+    _day = (int) date.toEpochDay();
   }
 
-  public void addService(Service service){
-    _services.add(service);
+  /** Copy of the itinerary, sharing its services
+   * @return Itinerary
+   */
+  public Itinerary copy(){
+    Itinerary itinerary = new Itinerary(getItineraryDate());
+    itinerary._legServices = _legServices;
+    itinerary._legStops = _legStops;
+    itinerary._itineraryPrice = _itineraryPrice;
+    return itinerary;
   }
 
-  public void addDeparture(Departure departure){
-    _itineraryDepartures.add(departure);
+  public List<Service> getServices(){
+    return Collections.unmodifiableList(Arrays.asList(_legServices));
   }
 
-  public void setItineraryPrice(){
-    double price = 0;
-    for(Service service : _services){
-      for(int i = 0; i<_itineraryDepartures.size()-1 ; i+=2){
-        if(service.containsDeparture(_itineraryDepartures.get(i)))
-          price += service.segmentPrice(_itineraryDepartures.get(i), _itineraryDepartures.get(i+1));
-      }
-    }
-    _itineraryPrice = price;
+  public int getNumberOfLegs(){
+    return _legServices.length;
   }
 
-  public double getItineraryPrice(){
-    return _itineraryPrice;
+  /** Adds a leg travelling on a service between two of its positions
+   * @param service
+   * @param departurePosition
+   * @param arrivalPosition
+   * @throws IndexOutOfBoundsException if the service has no such positions
+   */
+  public void addLeg(Service service, int departurePosition, int arrivalPosition){
+    if(departurePosition < 0 || departurePosition >= service.getNumberOfDepartures())
+      throw new IndexOutOfBoundsException("Index: " + departurePosition + ", Size: " + service.getNumberOfDepartures());
+    if(arrivalPosition < 0 || arrivalPosition >= service.getNumberOfDepartures())
+      throw new IndexOutOfBoundsException("Index: " + arrivalPosition + ", Size: " + service.getNumberOfDepartures());
+    int legs = _legServices.length;
+    Service[] legServices = Arrays.copyOf(_legServices, legs + 1);
+    int[] legStops = Arrays.copyOf(_legStops, 2*legs + 2);
+    legServices[legs] = service;
+    legStops[2*legs] = departurePosition;
+    legStops[2*legs+1] = arrivalPosition;
+    _legServices = legServices;
+    _legStops = legStops;
+    _itineraryPrice = Double.NaN;
   }
 
-  public LocalDate getItineraryDate(){
-    return _date;
+  /** Position, within its service, of the departure of a leg
+   * @param leg
+   * @return int
+   */
+  public int getDeparturePosition(int leg){
+    return _legStops[2*leg];
   }
 
-  public void setDuration(){
-    Duration totalDuration = Duration.parse("PT0H0M");
-    Duration betweenDepartures = Duration.parse("PT0H0M");
-    for(int i=0;i<_itineraryDepartures.size()-1;i++){
-      betweenDepartures = betweenDepartures.between(_itineraryDepartures.get(i).getDepartureTime(), _itineraryDepartures.get(i+1).getDepartureTime());
-      totalDuration = totalDuration.plus(betweenDepartures);
+  /** Position, within its service, of the arrival of a leg
+   * @param leg
+   * @return int
+   */
+  public int getArrivalPosition(int leg){
+    return _legStops[2*leg+1];
+  }
+
+  public double getItineraryPrice(){
+    double price = _itineraryPrice;
+    if(Double.isNaN(price)){
+      price = 0;
+      for(int i = 0; i < _legServices.length; i++){
+        price += _legServices[i].segmentPrice(_legStops[2*i], _legStops[2*i+1]);
+      }
+      _itineraryPrice = price;
     }
-    _duration = totalDuration;
+    return price;
+  }
+
+  public LocalDate getItineraryDate(){
+    return LocalDate.ofEpochDay(_day);
   }
 
   public Duration getItineraryDuration(){
-    return _duration;
+    if(_legServices.length == 0)
+      return Duration.ZERO;
+    return Duration.ofMinutes(getArrivalMinutes() - getStartMinutes());
   }
 
   public LocalTime getStartTime(){
-    return _itineraryDepartures.get(0).getDepartureTime();
+    return _legServices[0].getLocalTime(_legStops[0]);
   }
 
   public LocalTime getArrivalTime(){
-    return _itineraryDepartures.get(_itineraryDepartures.size()-1).getDepartureTime();
+    return _legServices[_legServices.length-1].getLocalTime(_legStops[_legStops.length-1]);
+  }
+
+  public int getStartMinutes(){
+    return _legServices[0].getMinutes(_legStops[0]);
+  }
+
+  public int getArrivalMinutes(){
+    return _legServices[_legServices.length-1].getMinutes(_legStops[_legStops.length-1]);
   }
 
   @Override
   public int compareTo(Itinerary itinerary){
-    return _date.compareTo(itinerary.getItineraryDate());
+    return Integer.compare(_day, itinerary._day);
   }
 
   public boolean containsService(Service service){
-    return _services.contains(service);
+    for(Service legService : _legServices){
+      if(legService.equals(service))
+        return true;
+    }
+    return false;
   }
 
   public String stringToItinerary(int i){
-    return "\nItinerário " + i + " para " + _date + " @ " + String.format("%.2f", _itineraryPrice);
+    return "\nItinerário " + i + " para " + getItineraryDate() + " @ " + String.format("%.2f", getItineraryPrice());
+  }
+
+  /** Writes the itinerary as toString does, a block with the departures of each service,
+   * without the final line break
+   * @param out
+   * @throws IOException on error on writing
+   */
+  public void appendTo(Appendable out) throws IOException{
+    for(int i = 0; i < _legServices.length; i++){
+      Service service = _legServices[i];
+      int first = _legStops[2*i];
+      int last = _legStops[2*i+1];
+      if(i > 0)
+        out.append('\n');
+      out.append("Serviço #").append(String.valueOf(service.getServiceID())).append(" @ ")
+        .append(String.format("%.2f", service.segmentPrice(first, last)));
+      if(last < first)
+        last = service.getNumberOfDepartures() - 1;
+      for(int j = first; j <= last; j++){
+        out.append('\n');
+        service.appendDeparture(out, j);
+      }
+    }
+  }
+
+  /** Reads an itinerary, converting the services and departures of the itineraries
+   * saved before they were kept as legs
+   * @param in
+   * @throws IOException on error on reading
+   * @throws InvalidObjectException if a leg isn't between two departures of its service
+   * @throws ClassNotFoundException if a class of the itinerary isn't found
+   */
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+    ObjectInputStream.GetField fields = in.readFields();
+    _itineraryPrice = Double.NaN;
+    if(!fields.defaulted("_legServices")){
+      _day = fields.get("_day", 0);
+      _legServices = (Service[]) fields.get("_legServices", null);
+      _legStops = (int[]) fields.get("_legStops", null);
+      if(_legServices == null || _legStops == null || _legStops.length != 2*_legServices.length)
+        throw new InvalidObjectException("Itinerary with malformed legs");
+    }
+    else{
+      _day = (int) ((LocalDate) fields.get("_date", null)).toEpochDay();
+      List<Service> services = (List<Service>) fields.get("_services", null);
+      List<Departure> departures = (List<Departure>) fields.get("_itineraryDepartures", null);
+      if(departures.size() != 2*services.size())
+        throw new InvalidObjectException("Itinerary with " + services.size() + " services and "
+          + departures.size() + " departures");
+      _legServices = services.toArray(new Service[services.size()]);
+      _legStops = new int[2*_legServices.length];
+      for(int i = 0; i < _legStops.length; i++){
+        Departure departure = departures.get(i);
+        _legStops[i] = _legServices[i/2].getIndexOf(departure.getStation(), departure.getMinutes());
+      }
+    }
+    for(int i = 0; i < _legStops.length; i++){
+      if(_legStops[i] < 0 || _legStops[i] >= _legServices[i/2].getNumberOfDepartures())
+        throw new InvalidObjectException("Itinerary leg " + i/2 + " isn't between departures of service "
+          + _legServices[i/2].getServiceID());
+    }
   }
 
   @Override
   public String toString(){
-    String printItinerary = "";
-    int contadorServicos = 0;
-    boolean continues = false;
-    for(int i = 0; i<_itineraryDepartures.size() - 1; i+=2){
-      Service service = _services.get(contadorServicos);
-      Departure start = _itineraryDepartures.get(i);
-      Departure arrival = _itineraryDepartures.get(i+1);
-      printItinerary += "Serviço #" + service.getServiceID() + " @ " + String.format("%.2f", service.segmentPrice(start, arrival)) + "\n";
-      List<Departure> departures = service.getDepartures();
-      for(Departure departure : departures){
-        if(_itineraryDepartures.get(i).equals(departure)){
-          continues = true;
-        }
-        if(continues){
-          printItinerary += departure.toString();
-        }
-        if(_itineraryDepartures.get(i+1).equals(departure)){
-          continues = false;
-        }
-      }
-      contadorServicos++;
+    StringBuilder printItinerary = new StringBuilder();
+    try{
+      appendTo(printItinerary);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
     }
-    return printItinerary.trim();
+    return printItinerary.toString().trim();
   }
 
 }
@@ -0,0 +1,429 @@
+package mmt;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import mmt.exceptions.NoSuchPassengerIdException;
+import mmt.exceptions.NonUniquePassengerNameException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Append-only journal of the changes made to a train company since its last snapshot.
+ * Registered passengers, name changes, services and itineraries are kept as small
+ * records, which are appended to "file.journal" when the state is saved, so saving
+ * costs as much as the changes and not as the whole company.
+ * When the journal grows larger than the snapshot, it is compacted: a new snapshot is
+ * encoded and written in the background, and the journal starts over.
+ * Loading a file replays its journals on top of its snapshot.
+ */
+public class Journal {
+
+  /** "MMTJ" */
+  private static final int MAGIC = 0x4D4D544A;
+
+  private static final int PASSENGER = 1;
+  private static final int RENAME = 2;
+  private static final int SERVICE = 3;
+  private static final int ITINERARY = 4;
+
+  /** Journals smaller than this are never compacted */
+  private static final long MINIMUM_COMPACTION_SIZE = 1 << 20;
+
+  private TrainCompany _company;
+  private String _filename;
+  private Path _journalPath;
+  private Path _oldJournalPath;
+
+  /** Journal being appended, only opened by the first commit after loading a file */
+  private FileChannel _channel;
+
+  /** Generation of the journal being appended */
+  private long _generation;
+
+  /** Size of the journal file */
+  private long _journalSize;
+
+  /** Size of the last snapshot */
+  private long _snapshotSize;
+
+  /** Records of the changes not saved yet */
+  private SnapshotOutput _pending = new SnapshotOutput();
+
+  /** Buffer where each record is encoded */
+  private SnapshotOutput _record = new SnapshotOutput(256);
+
+  private ExecutorService _compactor;
+  private volatile Future<Void> _compaction;
+
+  private Journal(TrainCompany company, String filename){
+    _company = company;
+    _filename = filename;
+    Path path = Paths.get(filename).toAbsolutePath();
+    _journalPath = path.resolveSibling(path.getFileName() + ".journal");
+    _oldJournalPath = path.resolveSibling(path.getFileName() + ".journal.old");
+    _compactor = Executors.newSingleThreadExecutor(new ThreadFactory(){
+      @Override
+      public Thread newThread(Runnable runnable){
+        Thread thread = new Thread(runnable, "journal-compaction");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /** Saves the whole company as a new snapshot of a file, discarding its old journals,
+   * and returns the journal that records the changes from now on
+   * @param company
+   * @param filename
+   * @return Journal attached to the company
+   * @throws IOException on error on writing the files
+   */
+  public static Journal create(TrainCompany company, String filename) throws IOException{
+    Journal journal = new Journal(company, filename);
+    company.lockChanges();
+    try{
+      journal.rewrite();
+      company.setJournal(journal);
+    }
+    finally{
+      company.unlockChanges();
+    }
+    return journal;
+  }
+
+  /** Loads a file: its snapshot and then the changes in its journals.
+   * The snapshot is only rewritten when a compaction was interrupted, leaving an old journal
+   * to fold in; otherwise nothing is written until the first commit, which continues the valid
+   * part of the journal (dropping a torn record at its end) or starts a new one.
+   * @param filename
+   * @return Journal attached to the loaded company
+   * @throws IOException on error on reading the files, or if they are malformed
+   * @throws ClassNotFoundException if the file was saved with Java serialization and refers to unknown classes
+   */
+  public static Journal recover(String filename) throws IOException, ClassNotFoundException{
+    TrainCompany company = Snapshot.load(filename);
+    Journal journal = new Journal(company, filename);
+    journal._snapshotSize = Files.size(Paths.get(filename));
+    long validLength = 0;
+    if(Files.exists(journal._oldJournalPath))
+      journal.replay(journal._oldJournalPath);
+    if(Files.exists(journal._journalPath))
+      validLength = journal.replay(journal._journalPath);
+
+    if(Files.exists(journal._oldJournalPath)){
+      journal.rewrite();
+    }
+    else if(validLength > 0){
+      journal._journalSize = validLength;
+      journal._generation = company.getJournalGeneration();
+    }
+    else{
+      journal._generation = company.getJournalGeneration() + 1;
+    }
+    company.setJournal(journal);
+    return journal;
+  }
+
+  public TrainCompany getCompany(){
+    return _company;
+  }
+
+  /** Replays a journal file on the company, if its changes aren't in the snapshot yet
+   * @param path
+   * @return long length of the valid part of the file (0 if it wasn't replayed)
+   * @throws IOException on error on reading the file, or if a record doesn't match the company
+   */
+  private long replay(Path path) throws IOException{
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+      if(channel.size() < 12)
+        return 0;
+      SnapshotInput input = new SnapshotInput(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      if(input.readInt() != MAGIC)
+        throw new IOException("Not a journal: " + path);
+      long generation = ((long) input.readInt() << 32) | (input.readInt() & 0xFFFFFFFFL);
+      if(generation <= _company.getJournalGeneration())
+        return 0;
+      int validLength = input.position();
+      while(input.hasRemaining()){
+        SnapshotInput record;
+        try{
+          record = input.readSection();
+          if(input.readInt() != record.checksum())
+            break;
+        }
+        catch(IOException e){
+          break;
+        }
+        apply(record);
+        validLength = input.position();
+      }
+      _company.setJournalGeneration(generation);
+      return validLength;
+    }
+  }
+
+  private void apply(SnapshotInput record) throws IOException{
+    _company.setJournal(null);
+    try{
+      int type = record.readVarInt();
+      if(type == PASSENGER){
+        _company.registerPassenger(record.readString());
+      }
+      else if(type == RENAME){
+        _company.changePassengerName(record.readVarInt(), record.readString());
+      }
+      else if(type == SERVICE){
+        int serviceID = record.readSignedVarInt();
+        double price = record.readDouble();
+        String[] stations = new String[record.readVarInt()];
+        int[] minutes = new int[stations.length];
+        for(int i = 0; i < stations.length; i++){
+          stations[i] = record.readString();
+          minutes[i] = record.readVarInt();
+        }
+        _company.registerService(serviceID, price, stations, minutes);
+      }
+      else if(type == ITINERARY){
+        Passenger passenger = _company.getPassengerTree().get(record.readVarInt());
+        if(passenger == null)
+          throw new IOException("Journal refers to an unknown passenger");
+        passenger.addItinerary(Snapshot.readItinerary(record, _company));
+      }
+    }
+    catch(NonUniquePassengerNameException | NoSuchPassengerIdException e){
+      throw new IOException("Journal doesn't match its snapshot", e);
+    }
+  }
+
+  public synchronized void passengerRegistered(String name){
+    _record.writeVarInt(PASSENGER);
+    _record.writeString(name);
+    addRecord();
+  }
+
+  public synchronized void passengerRenamed(int passengerID, String name){
+    _record.writeVarInt(RENAME);
+    _record.writeVarInt(passengerID);
+    _record.writeString(name);
+    addRecord();
+  }
+
+  public synchronized void serviceRegistered(Service service){
+    _record.writeVarInt(SERVICE);
+    _record.writeSignedVarInt(service.getServiceID());
+    _record.writeDouble(service.getServicePrice());
+    _record.writeVarInt(service.getNumberOfDepartures());
+    for(int i = 0; i < service.getNumberOfDepartures(); i++){
+      _record.writeString(service.getStation(i));
+      _record.writeVarInt(service.getMinutes(i));
+    }
+    addRecord();
+  }
+
+  public synchronized void itineraryAdded(int passengerID, Itinerary itinerary){
+    _record.writeVarInt(ITINERARY);
+    _record.writeVarInt(passengerID);
+    Snapshot.writeItinerary(_record, itinerary);
+    addRecord();
+  }
+
+  /** Moves the encoded record to the pending changes, with its length and checksum */
+  private void addRecord(){
+    _pending.writeSection(_record);
+    _pending.writeInt(_record.checksum());
+    _record.clear();
+  }
+
+  /** Appends the pending changes to the journal and forces them to disk,
+   * compacting the journal if it became larger than the snapshot.
+   * The changes of the company are stopped before locking the journal, since they lock it too.
+   * @throws IOException on error on writing the journal
+   */
+  public void commit() throws IOException{
+    Future<Void> compaction = _compaction;
+    if(!append() || (compaction != null && !compaction.isDone()))
+      return;
+    _company.lockChanges();
+    try{
+      synchronized(this){
+        if(needsCompaction())
+          compact();
+      }
+    }
+    finally{
+      _company.unlockChanges();
+    }
+  }
+
+  /** Appends the pending changes to the journal and forces them to disk
+   * @return boolean true if the journal should be compacted
+   * @throws IOException on error on writing the journal
+   */
+  private synchronized boolean append() throws IOException{
+    if(_channel == null)
+      openForAppend();
+    _pending.writeTo(_channel);
+    _channel.force(false);
+    _journalSize += _pending.size();
+    _pending.clear();
+    return needsCompaction();
+  }
+
+  private boolean needsCompaction(){
+    return _journalSize > Math.max(_snapshotSize, MINIMUM_COMPACTION_SIZE);
+  }
+
+  /** Starts a compaction in the background, where a new journal is started and a snapshot
+   * with every change is encoded and written, so the commit that needs it doesn't wait for it.
+   * The previous journal is kept as "file.journal.old" until the snapshot is written.
+   * @throws IOException on error on rewriting a file whose last compaction failed
+   */
+  private void compact() throws IOException{
+    if(_compaction != null && !_compaction.isDone())
+      return;
+    if(awaitCompaction() || Files.exists(_oldJournalPath)){
+      rewrite();
+      return;
+    }
+    _compaction = _compactor.submit(new Callable<Void>(){
+      @Override
+      public Void call() throws IOException{
+        Snapshot.write(rotate(), _filename);
+        Files.deleteIfExists(_oldJournalPath);
+        return null;
+      }
+    });
+  }
+
+  /** Encodes a snapshot with every change and starts a new journal for the changes after it,
+   * with the changes of the company stopped meanwhile
+   * @return SnapshotOutput with the encoded snapshot
+   * @throws IOException on error on rotating the journal files
+   */
+  private SnapshotOutput rotate() throws IOException{
+    _company.lockChanges();
+    try{
+      synchronized(this){
+        _company.setJournalGeneration(_generation);
+        SnapshotOutput snapshot = Snapshot.encode(_company);
+        _pending.clear();
+        if(_channel != null)
+          _channel.close();
+        move(_journalPath, _oldJournalPath);
+        openJournal(_generation + 1);
+        _snapshotSize = snapshot.size();
+        return snapshot;
+      }
+    }
+    finally{
+      _company.unlockChanges();
+    }
+  }
+
+  /** Waits for the running compaction, if any
+   * @return boolean true if it failed
+   */
+  private boolean awaitCompaction(){
+    if(_compaction == null)
+      return false;
+    try{
+      _compaction.get();
+      return false;
+    }
+    catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      return true;
+    }
+    catch(ExecutionException e){
+      return true;
+    }
+    finally{
+      _compaction = null;
+    }
+  }
+
+  /** Writes the whole company as the snapshot of the file and starts a new, empty journal
+   * @throws IOException on error on writing the files
+   */
+  private void rewrite() throws IOException{
+    awaitCompaction();
+    if(_channel != null)
+      _channel.close();
+    long generation = Math.max(_generation, _company.getJournalGeneration());
+    _company.setJournalGeneration(generation);
+    SnapshotOutput snapshot = Snapshot.encode(_company);
+    Snapshot.write(snapshot, _filename);
+    _snapshotSize = snapshot.size();
+    _pending.clear();
+    Files.deleteIfExists(_oldJournalPath);
+    openJournal(generation + 1);
+  }
+
+  /** Opens the journal of a loaded file for the first commit: the valid part of the journal
+   * found when loading, if there was one, or a new journal
+   * @throws IOException on error on opening the journal
+   */
+  private void openForAppend() throws IOException{
+    if(_journalSize == 0){
+      openJournal(_generation);
+      return;
+    }
+    _channel = FileChannel.open(_journalPath, StandardOpenOption.WRITE);
+    _channel.truncate(_journalSize);
+    _channel.position(_journalSize);
+  }
+
+  private void openJournal(long generation) throws IOException{
+    _generation = generation;
+    _channel = FileChannel.open(_journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING);
+    SnapshotOutput header = new SnapshotOutput(12);
+    header.writeInt(MAGIC);
+    header.writeInt((int) (generation >>> 32));
+    header.writeInt((int) generation);
+    header.writeTo(_channel);
+    _channel.force(false);
+    _journalSize = header.size();
+  }
+
+  private static void move(Path source, Path target) throws IOException{
+    try{
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(AtomicMoveNotSupportedException e){
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** Stops recording changes, discarding the ones not saved, and waits for the running compaction,
+   * which needs the journal, so the journal is only locked after it.
+   * Everything committed is already forced to disk, so errors on closing the journal are ignored.
+   */
+  public void close(){
+    _company.setJournal(null);
+    awaitCompaction();
+    synchronized(this){
+      _compactor.shutdown();
+      _pending.clear();
+      try{
+        if(_channel != null)
+          _channel.close();
+      }
+      catch(IOException e){
+        // nothing left to write
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package mmt;
+
+/**
+ * A partial journey reaching a station, as kept by the multi-criteria search:
+ * its arrival time, accumulated price and number of trips, plus the leg
+ * that reached the station and the label that leg was boarded from.
+ */
+public class JourneyLabel {
+
+  private int _station;
+  private int _arrival;
+  private double _price;
+  private int _trips;
+  private JourneyLabel _parent;
+  private Service _service;
+  private int _boardPosition;
+  private int _alightPosition;
+  private boolean _dominated;
+
+  /** JourneyLabel Construtor for the start of a journey
+   * @param station
+   * @param departureTime (minutes since midnight)
+   */
+  public JourneyLabel(int station, int departureTime){
+    _station = station;
+    _arrival = departureTime;
+  }
+
+  /** JourneyLabel Construtor for a journey which ends with a leg on a service
+   * @param parent (label from which the service was boarded)
+   * @param service
+   * @param boardPosition
+   * @param alightPosition
+   */
+  public JourneyLabel(JourneyLabel parent, Service service, int boardPosition, int alightPosition){
+    _parent = parent;
+    _service = service;
+    _boardPosition = boardPosition;
+    _alightPosition = alightPosition;
+    _station = service.getStationID(alightPosition);
+    _arrival = service.getMinutes(alightPosition);
+    _price = parent.getPrice() + service.segmentPrice(boardPosition, alightPosition);
+    _trips = parent.getTrips() + 1;
+  }
+
+  public int getStation(){
+    return _station;
+  }
+
+  public int getArrival(){
+    return _arrival;
+  }
+
+  public double getPrice(){
+    return _price;
+  }
+
+  public int getTrips(){
+    return _trips;
+  }
+
+  public JourneyLabel getParent(){
+    return _parent;
+  }
+
+  public Service getService(){
+    return _service;
+  }
+
+  public int getBoardPosition(){
+    return _boardPosition;
+  }
+
+  public int getAlightPosition(){
+    return _alightPosition;
+  }
+
+  public boolean isDominated(){
+    return _dominated;
+  }
+
+  public void setDominated(){
+    _dominated = true;
+  }
+
+  /** Checks if this journey is at least as good as another one in every criterion
+   * @param label
+   * @return boolean
+   */
+  public boolean dominates(JourneyLabel label){
+    return _arrival <= label.getArrival() && _price <= label.getPrice() && _trips <= label.getTrips();
+  }
+
+  /** Checks if this journey is kept instead of another one it ties with: the one with fewer services,
+   * then the one leaving later, then the one whose legs, in order, have the lower service identifiers
+   * and board and leave them at the earlier stops
+   * @param label
+   * @return boolean
+   */
+  public boolean precedes(JourneyLabel label){
+    if(_trips != label.getTrips())
+      return _trips < label.getTrips();
+    JourneyLabel[] legs = legs();
+    JourneyLabel[] otherLegs = label.legs();
+    if(legs.length == 0)
+      return false;
+    int departure = legs[0].getService().getMinutes(legs[0].getBoardPosition());
+    int otherDeparture = otherLegs[0].getService().getMinutes(otherLegs[0].getBoardPosition());
+    if(departure != otherDeparture)
+      return departure > otherDeparture;
+    for(int i = 0; i < legs.length; i++){
+      int compared = Integer.compare(legs[i].getService().getServiceID(), otherLegs[i].getService().getServiceID());
+      if(compared == 0)
+        compared = Integer.compare(legs[i].getBoardPosition(), otherLegs[i].getBoardPosition());
+      if(compared == 0)
+        compared = Integer.compare(legs[i].getAlightPosition(), otherLegs[i].getAlightPosition());
+      if(compared != 0)
+        return compared < 0;
+    }
+    return false;
+  }
+
+  /** The labels ending each leg of the journey, from the first one */
+  private JourneyLabel[] legs(){
+    JourneyLabel[] legs = new JourneyLabel[_trips];
+    JourneyLabel leg = this;
+    for(int i = _trips - 1; i >= 0; i--){
+      legs[i] = leg;
+      leg = leg.getParent();
+    }
+    return legs;
+  }
+}
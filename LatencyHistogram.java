@@ -0,0 +1,110 @@
+package mmt;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies, in nanoseconds, that can be recorded from many threads
+ * without locking. Latencies are counted in buckets of logarithmic width, 8 buckets
+ * per power of two, so percentiles are within 12.5% of the latencies recorded.
+ */
+public class LatencyHistogram {
+
+  /** Each power of two is split in 2^SUB_BUCKET_BITS buckets */
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** Latencies below this have a bucket each */
+  private static final long LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder _total = new LongAdder();
+  private final AtomicLong _max = new AtomicLong();
+
+  /** Records a latency
+   * @param nanos (negative latencies are recorded as 0)
+   */
+  public void record(long nanos){
+    if(nanos < 0)
+      nanos = 0;
+    _buckets.incrementAndGet(bucket(nanos));
+    _total.add(nanos);
+    long max = _max.get();
+    while(nanos > max && !_max.compareAndSet(max, nanos)){
+      max = _max.get();
+    }
+  }
+
+  private static int bucket(long nanos){
+    if(nanos < LINEAR_LIMIT)
+      return (int) nanos;
+    int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /** Highest latency counted in a bucket */
+  private static long highestIn(int bucket){
+    if(bucket < LINEAR_LIMIT)
+      return bucket;
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  public long getCount(){
+    long count = 0;
+    for(int i = 0; i < BUCKETS; i++){
+      count += _buckets.get(i);
+    }
+    return count;
+  }
+
+  /** Mean latency
+   * @return double (nanoseconds, 0 if nothing was recorded)
+   */
+  public double getMean(){
+    long count = getCount();
+    if(count == 0)
+      return 0;
+    return (double) _total.sum() / count;
+  }
+
+  public long getMax(){
+    return _max.get();
+  }
+
+  /** Latency below which a certain percentage of the latencies recorded are
+   * @param percentile (from 0 to 100)
+   * @return long (nanoseconds, 0 if nothing was recorded)
+   */
+  public long getPercentile(double percentile){
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    for(int i = 0; i < BUCKETS; i++){
+      counts[i] = _buckets.get(i);
+      count += counts[i];
+    }
+    if(count == 0)
+      return 0;
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for(int i = 0; i < BUCKETS; i++){
+      seen += counts[i];
+      if(seen >= rank)
+        return Math.min(highestIn(i), getMax());
+    }
+    return getMax();
+  }
+
+  /** Forgets every latency recorded */
+  public void reset(){
+    for(int i = 0; i < BUCKETS; i++){
+      _buckets.set(i, 0);
+    }
+    _total.reset();
+    _max.set(0);
+  }
+}
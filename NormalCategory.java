@@ -2,26 +2,23 @@ package mmt;
 
 import java.io.Serializable;
 
+/**
+ * Only kept to read files saved with Java serialization, which have one
+ * category object per passenger; it is replaced by CategoryType.NORMAL.
+ * @deprecated categories are now the shared instances of CategoryType
+ */
+@Deprecated
 public class NormalCategory extends CategoryType implements Serializable{
 
   /** Serial number for serialization. */
   private static final long serialVersionUID = 201708301010L;
 
-  /** Passenger Construtor
-   * @param passenger
-   */
-  public NormalCategory(Passenger passenger){
-    super(passenger);
+  private NormalCategory(){
+    super(CategoryType.NORMAL.getName(), CategoryType.NORMAL.getDiscount(), CategoryType.NORMAL.getMinimumPaidValue());
   }
 
   @Override
-  public double getDiscount(){
-    return 1.00;
+  protected Object readResolve(){
+    return CategoryType.NORMAL;
   }
-
-  @Override
-  public String toString(){
-    return "NORMAL";
-  }
-
 }
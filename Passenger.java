@@ -1,24 +1,47 @@
 package mmt;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.LocalTime;
 import java.time.Duration;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 
+/**
+ * A passenger of the train company. Each passenger is its own lock: the itineraries
+ * and the accumulated state are only read and changed while holding it, so
+ * different passengers can acquire itineraries concurrently.
+ */
 public class Passenger implements Serializable {
 
   /** Serial number for serialization. */
   private static final long serialVersionUID = 201708301010L;
 
+  /** Number of recent itineraries whose prices decide the category */
+  private static final int RECENT_ITINERARIES = 10;
+
   private int _passengerID;
-  private String _passengerName;
+  private volatile String _passengerName;
   private CategoryType _category;
   private Duration _totalTime;
   private int _numberOfItineraries;
   private double _paidValue;
   private List<Itinerary> _itineraries = new ArrayList<Itinerary>();
 
+  /** The same itineraries sorted by date, and by order of acquisition on the same date */
+  private transient List<Itinerary> _itinerariesByDate = new ArrayList<Itinerary>();
+
+  /** Prices of the last itineraries acquired, as a ring buffer */
+  private transient double[] _recentPrices = new double[RECENT_ITINERARIES];
+
+  /** Position of the oldest price in the ring buffer, where the next one is written */
+  private transient int _oldestRecentPrice;
+
+  /** Sum of the prices in the ring buffer */
+  private transient double _recentPricesSum;
+
   /** Passenger Construtor
    * @param id
    * @param name
@@ -27,7 +50,7 @@ public class Passenger implements Serializable {
   public Passenger(int id, String name){
     _passengerID = id;
     _passengerName = name;
-    _category = new NormalCategory(this);
+    _category = CategoryTable.getTable().getLowestTier();
     _numberOfItineraries = 0;
     _totalTime = Duration.parse("PT0H0M");
     _paidValue = 0;
@@ -37,7 +60,7 @@ public class Passenger implements Serializable {
     _passengerName = name;
   }
 
-  public void setCategory(CategoryType category){
+  public synchronized void setCategory(CategoryType category){
     _category = category;
   }
 
@@ -49,47 +72,121 @@ public class Passenger implements Serializable {
     return _passengerName;
   }
 
-  public CategoryType getCategory(){
+  public synchronized CategoryType getCategory(){
     return _category;
   }
 
-  public int getNumberOfItineraries(){
+  public synchronized int getNumberOfItineraries(){
     return _numberOfItineraries;
   }
 
+  /** Returns the itineraries of the passenger, in the order they were acquired,
+   * which must only be used while holding its lock
+   * @return List of itineraries
+   */
   public List<Itinerary> getItineraries(){
-    return _itineraries;
+    return Collections.unmodifiableList(_itineraries);
+  }
+
+  /** Returns the itineraries of the passenger sorted by date,
+   * which must only be used while holding its lock
+   * @return List of itineraries
+   */
+  public List<Itinerary> getItinerariesByDate(){
+    return Collections.unmodifiableList(_itinerariesByDate);
+  }
+
+  public synchronized Duration getTotalTime(){
+    return _totalTime;
+  }
+
+  public synchronized double getTotalPaidValue(){
+    return _paidValue;
+  }
+
+  /** Restores the accumulated state of the passenger, when loading a saved file
+   * @param category
+   * @param numberOfItineraries
+   * @param paidValue
+   * @param totalTime
+   */
+  public synchronized void restoreState(CategoryType category, int numberOfItineraries, double paidValue, Duration totalTime){
+    _category = category;
+    _numberOfItineraries = numberOfItineraries;
+    _paidValue = paidValue;
+    _totalTime = totalTime;
+  }
+
+  /** Restores an itinerary, when loading a saved file, without changing the accumulated state
+   * @param itinerary
+   */
+  public synchronized void restoreItinerary(Itinerary itinerary){
+    _itineraries.add(itinerary);
+    addByDate(itinerary);
+    addRecentPrice(itinerary.getItineraryPrice());
   }
 
-  public void addItinerary(Itinerary itinerary){
+  public synchronized void addItinerary(Itinerary itinerary){
     _numberOfItineraries++;
     _itineraries.add(itinerary);
+    addByDate(itinerary);
+    addRecentPrice(itinerary.getItineraryPrice());
     double discount = _category.getDiscount();
     _paidValue += (itinerary.getItineraryPrice())*discount;
     _totalTime = _totalTime.plus(itinerary.getItineraryDuration());
-    _category.testState();
+    _category = CategoryTable.getTable().getCategory(getPaidValue());
   }
 
-  public int getIndexOf(Itinerary itinerary){
-    return _itineraries.indexOf(itinerary)+1;
+  /** Replaces the oldest recent price, summing the recent prices from the oldest
+   * to the newest, as they were always summed
+   * @param price
+   */
+  private void addRecentPrice(double price){
+    _recentPrices[_oldestRecentPrice] = price;
+    _oldestRecentPrice = (_oldestRecentPrice + 1) % RECENT_ITINERARIES;
+    double sum = 0;
+    for(int i = 0; i < RECENT_ITINERARIES; i++){
+      sum += _recentPrices[(_oldestRecentPrice + i) % RECENT_ITINERARIES];
+    }
+    _recentPricesSum = sum;
   }
 
-  public String stringToItinerary(Itinerary itinerary){
-    return "Itinerário " + getIndexOf(itinerary) + " para " + itinerary.getItineraryDate() + " @ " + String.format("%.2f", itinerary.getItineraryPrice());
+  /** Inserts an itinerary after every itinerary with the same or an earlier date
+   * @param itinerary
+   */
+  private void addByDate(Itinerary itinerary){
+    int low = 0;
+    int high = _itinerariesByDate.size();
+    if(high > 0 && _itinerariesByDate.get(high - 1).compareTo(itinerary) > 0){
+      while(low < high){
+        int middle = (low + high) >>> 1;
+        if(_itinerariesByDate.get(middle).compareTo(itinerary) <= 0)
+          low = middle + 1;
+        else
+          high = middle;
+      }
+    }
+    _itinerariesByDate.add(high, itinerary);
   }
 
-  public double getPaidValue(){
-    double paidValue = 0;
-    List<Itinerary> lastTenItineraries = new ArrayList<Itinerary>();
-    if(getNumberOfItineraries() < 10){
+  /** Header of an itinerary of the passenger
+   * @param number (number of the itinerary, from 1, in the order of getItinerariesByDate)
+   * @param itinerary
+   * @return String
+   */
+  public String stringToItinerary(int number, Itinerary itinerary){
+    return "Itinerário " + number + " para " + itinerary.getItineraryDate() + " @ " + String.format("%.2f", itinerary.getItineraryPrice());
+  }
+
+  /** Value that decides the category: the total paid until the passenger has ten itineraries,
+   * and the price of the last ten itineraries from then on
+   * @return double
+   */
+  public synchronized double getPaidValue(){
+    if(_numberOfItineraries < RECENT_ITINERARIES){
       return _paidValue;
     }
-    else{
-      lastTenItineraries = _itineraries.subList(_numberOfItineraries-10, _numberOfItineraries);
-      for(Itinerary itinerary : lastTenItineraries)
-        paidValue += itinerary.getItineraryPrice();
-    }
-    return paidValue;
+    return _recentPricesSum;
   }
 
   public String stringItinerary(){
@@ -98,10 +195,21 @@ public class Passenger implements Serializable {
 
   @Override
   @SuppressWarnings("nls")
-  public String toString(){
+  public synchronized String toString(){
     long hours = _totalTime.toHours();
     long minutes = _totalTime.toMinutes();
     return _passengerID +"|"+ _passengerName +"|" + _category.toString() + "|"
     + _numberOfItineraries + "|" + String.format("%.2f", _paidValue) + "|" + String.format("%02d",hours) + ":" + String.format("%02d",minutes-60*hours);
   }
+
+  /** Rebuilds the date order and the recent prices of a passenger saved with Java serialization */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+    in.defaultReadObject();
+    _itinerariesByDate = new ArrayList<Itinerary>(_itineraries);
+    Collections.sort(_itinerariesByDate);
+    _recentPrices = new double[RECENT_ITINERARIES];
+    for(Itinerary itinerary : _itineraries){
+      addRecentPrice(itinerary.getItineraryPrice());
+    }
+  }
 }
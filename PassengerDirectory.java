@@ -0,0 +1,75 @@
+package mmt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index of the passengers by name: a hash index to check if a name is in use
+ * and a sorted index to find the passengers whose name starts with a prefix.
+ * Names are unique, so each name maps to a single passenger.
+ * Lookups don't lock; changes must be made while holding the directory's lock,
+ * so that checking a name and taking it happen atomically.
+ */
+public class PassengerDirectory {
+
+  /** Passengers by name */
+  private Map<String, Passenger> _names = new ConcurrentHashMap<String, Passenger>();
+
+  /** Passengers sorted by name */
+  private ConcurrentSkipListMap<String, Passenger> _sortedNames = new ConcurrentSkipListMap<String, Passenger>();
+
+  /** PassengerDirectory Construtor
+   * @param passengers (passengers to be indexed)
+   */
+  public PassengerDirectory(Collection<Passenger> passengers){
+    for(Passenger passenger : passengers){
+      addPassenger(passenger);
+    }
+  }
+
+  public void addPassenger(Passenger passenger){
+    _names.put(passenger.getName(), passenger);
+    _sortedNames.put(passenger.getName(), passenger);
+  }
+
+  /** Updates the index after a passenger changes name
+   * @param passenger
+   * @param oldName
+   */
+  public void renamePassenger(Passenger passenger, String oldName){
+    _names.remove(oldName);
+    _sortedNames.remove(oldName);
+    addPassenger(passenger);
+  }
+
+  public boolean containsName(String name){
+    return _names.containsKey(name);
+  }
+
+  /** Passenger with a certain name
+   * @param name
+   * @return Passenger, or null if no passenger has that name
+   */
+  public Passenger getPassenger(String name){
+    return _names.get(name);
+  }
+
+  /** Passengers whose name starts with a prefix
+   * @param prefix
+   * @return List of passengers sorted by name
+   */
+  public List<Passenger> findByPrefix(String prefix){
+    List<Passenger> passengers = new ArrayList<Passenger>();
+    for(Map.Entry<String, Passenger> entry : _sortedNames.tailMap(prefix, true).entrySet()){
+      if(!entry.getKey().startsWith(prefix))
+        break;
+      passengers.add(entry.getValue());
+    }
+    return Collections.unmodifiableList(passengers);
+  }
+}
@@ -0,0 +1,425 @@
+package mmt;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Round-based multi-criteria search (in the style of McRAPTOR).
+ * Round k finds the journeys using k services, boarding them from the stations
+ * improved in round k-1, and every station keeps only the journeys which are not
+ * dominated in arrival time, price and number of transfers.
+ * The result is the Pareto frontier of the journeys to the arrival station.
+ * In a pool, when enough services leave the departure station, the journeys starting
+ * with each of them are explored in parallel, sharing the journeys found to the arrival
+ * station to discard the ones they dominate, and their frontiers are merged.
+ */
+public class RaptorSearch {
+
+  /** Default maximum number of services of a journey */
+  public static final int DEFAULT_MAX_TRIPS = 5;
+
+  /** Least number of services from the departure station for a search in a pool to explore
+   * them in parallel; searches with fewer are too short to pay for the tasks */
+  public static final int PARALLEL_FIRST_SERVICES = 8;
+
+  private StationIndex _stationIndex;
+  private StationRegistry _stations;
+  private int _maxTrips;
+
+  /** Work done by the current search, reported through SearchStatistics */
+  private long _stationsExpanded;
+  private long _servicesScanned;
+  private long _stopsScanned;
+  private long _labelsGenerated;
+  private long _labelsDiscarded;
+  private long _labelsReplaced;
+  private int _rounds;
+
+  /** Journeys to the arrival station found by every first service, when they are explored in parallel */
+  private SharedFrontier _sharedTarget;
+
+  /** RaptorSearch Construtor
+   * @param stationIndex (stops of the services at each station)
+   * @param stations (registry with the stations of the services)
+   * @param maxTrips (maximum number of services of a journey)
+   */
+  public RaptorSearch(StationIndex stationIndex, StationRegistry stations, int maxTrips){
+    _stationIndex = stationIndex;
+    _stations = stations;
+    _maxTrips = maxTrips;
+  }
+
+  /** Finds the journeys leaving the departureStation after the departureTime
+  * which are not dominated in arrival time, price and number of transfers.
+  * @param departureStation
+  * @param arrivalStation
+  * @param date
+  * @param departureTime
+  * @return List of itineraries sorted by time of departure, time of arrival and price
+  */
+  public List<Itinerary> search(String departureStation, String arrivalStation, LocalDate date, LocalTime departureTime){
+    return search(departureStation, arrivalStation, date, departureTime, null);
+  }
+
+  /** Searches like search, recording the work done and the time of each phase
+  * @param departureStation
+  * @param arrivalStation
+  * @param date
+  * @param departureTime
+  * @param statistics (filled by the search, or null)
+  * @return List of itineraries sorted by time of departure, time of arrival and price
+  */
+  public List<Itinerary> search(String departureStation, String arrivalStation, LocalDate date, LocalTime departureTime,
+    SearchStatistics statistics){
+    return search(departureStation, arrivalStation, date, departureTime, statistics, null);
+  }
+
+  /** Searches like search, exploring the journeys starting with each service from the
+  * departureStation in parallel, in a pool
+  * @param departureStation
+  * @param arrivalStation
+  * @param date
+  * @param departureTime
+  * @param statistics (filled by the search, or null)
+  * @param pool (pool exploring the first services, or null to search in this thread)
+  * @return List of itineraries sorted by time of departure, time of arrival and price
+  */
+  public List<Itinerary> search(String departureStation, String arrivalStation, LocalDate date, LocalTime departureTime,
+    SearchStatistics statistics, ForkJoinPool pool){
+    long started = System.nanoTime();
+    resetWork();
+    int origin = _stations.getID(departureStation);
+    int target = _stations.getID(arrivalStation);
+    List<Itinerary> itineraries = new ArrayList<Itinerary>();
+    if(origin < 0 || target < 0 || origin == target)
+      return itineraries;
+
+    int minutes = departureTime.toSecondOfDay() / 60;
+    List<JourneyLabel> frontier;
+    if(pool == null)
+      frontier = frontier(origin, target, minutes, null);
+    else
+      frontier = parallelFrontier(origin, target, minutes, pool);
+    long searched = System.nanoTime();
+
+    if(!frontier.isEmpty()){
+      for(JourneyLabel label : frontier){
+        itineraries.add(buildsItinerary(label, date));
+      }
+      Comparator<Itinerary> order = new ItineraryStartComparator().thenComparing(new ItineraryArrivalComparator())
+        .thenComparing(new ItineraryPriceComparator());
+      Collections.sort(itineraries, order);
+    }
+    if(statistics != null){
+      statistics.setWork(_rounds, _stationsExpanded, _servicesScanned, _stopsScanned,
+        _labelsGenerated, _labelsDiscarded, _labelsReplaced);
+      statistics.setItineraries(itineraries.size());
+      statistics.setRoundsNanos(searched - started);
+      statistics.setBuildNanos(System.nanoTime() - searched);
+    }
+    return itineraries;
+  }
+
+  /** Forgets the work done by the previous search, so each one reports only its own */
+  private void resetWork(){
+    _stationsExpanded = 0;
+    _servicesScanned = 0;
+    _stopsScanned = 0;
+    _labelsGenerated = 0;
+    _labelsDiscarded = 0;
+    _labelsReplaced = 0;
+    _rounds = 0;
+  }
+
+  /** Runs the rounds of the search
+   * @param origin (identifier of the departure station)
+   * @param target (identifier of the arrival station)
+   * @param minutes (departure time, in minutes since midnight)
+   * @param firstService (the only service boarded in the first round, or null for every service)
+   * @return List of the journeys to the arrival station which are not dominated
+   */
+  private List<JourneyLabel> frontier(int origin, int target, int minutes, Service firstService){
+    List<List<JourneyLabel>> bags = new ArrayList<List<JourneyLabel>>(_stations.size());
+    for(int i = 0; i < _stations.size(); i++){
+      bags.add(null);
+    }
+    bags.set(origin, new ArrayList<JourneyLabel>());
+    bags.get(origin).add(new JourneyLabel(origin, minutes));
+    Map<Integer, List<JourneyLabel>> marked = new LinkedHashMap<Integer, List<JourneyLabel>>();
+    marked.put(origin, new ArrayList<JourneyLabel>(bags.get(origin)));
+
+    for(int round = 1; round <= _maxTrips && !marked.isEmpty(); round++){
+      _rounds = Math.max(_rounds, round);
+      _stationsExpanded += marked.size();
+      Map<Service, JourneyLabel[]> boardings = collectBoardings(marked);
+      if(round == 1 && firstService != null)
+        boardings.keySet().retainAll(Collections.singleton(firstService));
+      marked = new LinkedHashMap<Integer, List<JourneyLabel>>();
+      for(Map.Entry<Service, JourneyLabel[]> entry : boardings.entrySet()){
+        scanService(entry.getKey(), entry.getValue(), bags, target, marked);
+      }
+    }
+    if(bags.get(target) == null)
+      return Collections.emptyList();
+    return bags.get(target);
+  }
+
+  /** Runs the rounds of the search for each service from the departure station in parallel,
+   * merging the journeys found in the order of those services, or runs them in this thread if
+   * there are fewer than PARALLEL_FIRST_SERVICES services.
+   * Of journeys equal in arrival time, price and transfers both keep the one which
+   * JourneyLabel.precedes the others, so the frontier is the same as the sequential one.
+   * @param origin
+   * @param target
+   * @param minutes
+   * @param pool
+   * @return List of the journeys to the arrival station which are not dominated
+   */
+  private List<JourneyLabel> parallelFrontier(int origin, int target, int minutes, ForkJoinPool pool){
+    Map<Integer, List<JourneyLabel>> start = new LinkedHashMap<Integer, List<JourneyLabel>>();
+    start.put(origin, Collections.singletonList(new JourneyLabel(origin, minutes)));
+    Set<Service> firstServices = collectBoardings(start).keySet();
+    if(firstServices.size() < PARALLEL_FIRST_SERVICES)
+      return frontier(origin, target, minutes, null);
+
+    SharedFrontier sharedTarget = new SharedFrontier(target);
+    final List<FirstServiceSearch> searches = new ArrayList<FirstServiceSearch>(firstServices.size());
+    for(Service service : firstServices){
+      RaptorSearch search = new RaptorSearch(_stationIndex, _stations, _maxTrips);
+      search._sharedTarget = sharedTarget;
+      searches.add(new FirstServiceSearch(search, origin, target, minutes, service));
+    }
+    pool.invoke(new RecursiveAction(){
+      @Override
+      protected void compute(){
+        invokeAll(searches);
+      }
+    });
+
+    List<JourneyLabel> frontier = new ArrayList<JourneyLabel>();
+    for(FirstServiceSearch search : searches){
+      for(JourneyLabel label : search.join()){
+        if(dominatedBy(frontier, label))
+          continue;
+        for(int i = frontier.size() - 1; i >= 0; i--){
+          if(label.dominates(frontier.get(i)))
+            frontier.remove(i);
+        }
+        frontier.add(label);
+      }
+      RaptorSearch work = search.getSearch();
+      _rounds = Math.max(_rounds, work._rounds);
+      _stationsExpanded += work._stationsExpanded;
+      _servicesScanned += work._servicesScanned;
+      _stopsScanned += work._stopsScanned;
+      _labelsGenerated += work._labelsGenerated;
+      _labelsDiscarded += work._labelsDiscarded;
+      _labelsReplaced += work._labelsReplaced;
+    }
+    return frontier;
+  }
+
+  /** For each service calling at a marked station, the cheapest label that can board it at each position
+   * @param marked (labels improved in the previous round, by station)
+   * @return Map with the boarding labels of each service, indexed by position
+   */
+  private Map<Service, JourneyLabel[]> collectBoardings(Map<Integer, List<JourneyLabel>> marked){
+    Map<Service, JourneyLabel[]> boardings = new LinkedHashMap<Service, JourneyLabel[]>();
+    for(Map.Entry<Integer, List<JourneyLabel>> entry : marked.entrySet()){
+      for(StationStop stop : _stationIndex.getStops(entry.getKey())){
+        if(stop.isLastStop())
+          continue;
+        for(JourneyLabel label : entry.getValue()){
+          if(label.isDominated() || stop.getMinutes() <= label.getArrival())
+            continue;
+          JourneyLabel[] positions = boardings.get(stop.getService());
+          if(positions == null){
+            positions = new JourneyLabel[stop.getService().getNumberOfDepartures()];
+            boardings.put(stop.getService(), positions);
+          }
+          JourneyLabel current = positions[stop.getPosition()];
+          if(current == null || label.getPrice() < current.getPrice()
+            || (label.getPrice() == current.getPrice() && label.precedes(current)))
+            positions[stop.getPosition()] = label;
+        }
+      }
+    }
+    return boardings;
+  }
+
+  /** Travels along a service, keeping the cheapest way to be on board, and offers
+   * a journey to every station after the boarding position
+   * @param service
+   * @param positions (boarding labels, indexed by position)
+   * @param bags (non dominated labels of each station)
+   * @param target (identifier of the arrival station)
+   * @param marked (stations improved in this round)
+   */
+  private void scanService(Service service, JourneyLabel[] positions, List<List<JourneyLabel>> bags,
+    int target, Map<Integer, List<JourneyLabel>> marked){
+    JourneyLabel boarded = null;
+    int boardPosition = -1;
+    _servicesScanned++;
+    for(int j = 0; j < service.getNumberOfDepartures(); j++){
+      _stopsScanned++;
+      double priceOnBoard = 0;
+      if(boarded != null){
+        JourneyLabel candidate = new JourneyLabel(boarded, service, boardPosition, j);
+        _labelsGenerated++;
+        priceOnBoard = candidate.getPrice();
+        if(dominatedBy(bags.get(target), candidate) || (_sharedTarget != null && _sharedTarget.strictlyDominates(candidate))
+          || !addToBag(bags, candidate)){
+          _labelsDiscarded++;
+        }
+        else{
+          List<JourneyLabel> labels = marked.get(candidate.getStation());
+          if(labels == null){
+            labels = new ArrayList<JourneyLabel>();
+            marked.put(candidate.getStation(), labels);
+          }
+          labels.add(candidate);
+        }
+      }
+      JourneyLabel boarding = positions[j];
+      if(boarding != null && (boarded == null || boarding.getPrice() < priceOnBoard)){
+        boarded = boarding;
+        boardPosition = j;
+      }
+    }
+  }
+
+  /** Checks if a label is dominated by one in the bag, or ties with one which precedes it
+   * @param bag
+   * @param label
+   * @return boolean
+   */
+  private boolean dominatedBy(List<JourneyLabel> bag, JourneyLabel label){
+    if(bag == null)
+      return false;
+    for(JourneyLabel other : bag){
+      if(other.dominates(label) && !(label.dominates(other) && label.precedes(other)))
+        return true;
+    }
+    return false;
+  }
+
+  /** Adds a label to the bag of its station, unless it is dominated, removing the labels it dominates
+   * @param bags
+   * @param label
+   * @return boolean true if the label was added
+   */
+  private boolean addToBag(List<List<JourneyLabel>> bags, JourneyLabel label){
+    List<JourneyLabel> bag = bags.get(label.getStation());
+    if(bag == null){
+      bag = new ArrayList<JourneyLabel>();
+      bags.set(label.getStation(), bag);
+    }
+    else if(dominatedBy(bag, label)){
+      return false;
+    }
+    for(int i = bag.size() - 1; i >= 0; i--){
+      if(label.dominates(bag.get(i))){
+        _labelsReplaced++;
+        bag.get(i).setDominated();
+        bag.remove(i);
+      }
+    }
+    bag.add(label);
+    if(_sharedTarget != null && label.getStation() == _sharedTarget.getStation())
+      _sharedTarget.add(label);
+    return true;
+  }
+
+  /** Builds the itinerary of a journey, following the labels back to its start
+   * @param label
+   * @param date
+   * @return Itinerary
+   */
+  private Itinerary buildsItinerary(JourneyLabel label, LocalDate date){
+    LinkedList<JourneyLabel> legs = new LinkedList<JourneyLabel>();
+    for(JourneyLabel leg = label; leg.getParent() != null; leg = leg.getParent()){
+      legs.addFirst(leg);
+    }
+    Itinerary itinerary = new Itinerary(date);
+    for(JourneyLabel leg : legs){
+      itinerary.addLeg(leg.getService(), leg.getBoardPosition(), leg.getAlightPosition());
+    }
+    return itinerary;
+  }
+
+  /** Search of the journeys starting with one service, run in a pool */
+  private static class FirstServiceSearch extends RecursiveTask<List<JourneyLabel>> {
+    private static final long serialVersionUID = 201708301010L;
+
+    private final RaptorSearch _search;
+    private final int _origin;
+    private final int _target;
+    private final int _minutes;
+    private final Service _firstService;
+
+    FirstServiceSearch(RaptorSearch search, int origin, int target, int minutes, Service firstService){
+      _search = search;
+      _origin = origin;
+      _target = target;
+      _minutes = minutes;
+      _firstService = firstService;
+    }
+
+    RaptorSearch getSearch(){
+      return _search;
+    }
+
+    @Override
+    protected List<JourneyLabel> compute(){
+      return _search.frontier(_origin, _target, _minutes, _firstService);
+    }
+  }
+
+  /** Journeys to the arrival station found by the parallel searches. Only the journeys
+   * strictly dominated by them are discarded, so which search finds a tie first doesn't
+   * change the result. Journeys are rarely added, so the array is copied on write and
+   * read without locking.
+   */
+  private static class SharedFrontier {
+    private final int _station;
+    private volatile JourneyLabel[] _labels = new JourneyLabel[0];
+
+    SharedFrontier(int station){
+      _station = station;
+    }
+
+    int getStation(){
+      return _station;
+    }
+
+    boolean strictlyDominates(JourneyLabel label){
+      for(JourneyLabel other : _labels){
+        if(other.dominates(label) && !label.dominates(other))
+          return true;
+      }
+      return false;
+    }
+
+    synchronized void add(JourneyLabel label){
+      List<JourneyLabel> labels = new ArrayList<JourneyLabel>(_labels.length + 1);
+      for(JourneyLabel other : _labels){
+        if(!(label.dominates(other) && !other.dominates(label)))
+          labels.add(other);
+      }
+      labels.add(label);
+      _labels = labels.toArray(new JourneyLabel[labels.size()]);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package mmt;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of the itineraries found by the search, keyed by departure station,
+ * arrival station, date and time bucket, evicting the least recently used entry.
+ * Every change to the timetable invalidates the whole cache and starts a new generation;
+ * results computed in an older generation are not stored.
+ * The cache keeps its own copies of the itineraries it stores, and each hit returns copies
+ * of them, so the itineraries of every caller can be committed independently.
+ */
+public class SearchCache {
+
+  /** Default maximum number of cached searches */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final int _capacity;
+  private long _generation;
+  private long _hits;
+  private long _misses;
+
+  /** Cached searches, from the least to the most recently used */
+  private Map<Key, List<Itinerary>> _entries = new LinkedHashMap<Key, List<Itinerary>>(16, 0.75f, true){
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, List<Itinerary>> eldest){
+      return size() > _capacity;
+    }
+  };
+
+  /** SearchCache Construtor
+   * @param capacity (maximum number of cached searches)
+   */
+  public SearchCache(int capacity){
+    _capacity = capacity;
+  }
+
+  public SearchCache(){
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** Generation of the timetable, to be read before searching and passed to put
+   * @return long
+   */
+  public synchronized long getGeneration(){
+    return _generation;
+  }
+
+  /** Returns the itineraries of a cached search
+   * @param origin (identifier of the departure station)
+   * @param target (identifier of the arrival station)
+   * @param date
+   * @param bucket (time bucket of the departure time)
+   * @return List with copies of the itineraries, or null if the search isn't cached
+   */
+  public List<Itinerary> get(int origin, int target, LocalDate date, int bucket){
+    List<Itinerary> itineraries;
+    synchronized(this){
+      itineraries = _entries.get(new Key(origin, target, date, bucket));
+      if(itineraries == null){
+        _misses++;
+        return null;
+      }
+      _hits++;
+    }
+    return copies(itineraries);
+  }
+
+  private static List<Itinerary> copies(List<Itinerary> itineraries){
+    List<Itinerary> copies = new ArrayList<Itinerary>(itineraries.size());
+    for(Itinerary itinerary : itineraries){
+      copies.add(itinerary.copy());
+    }
+    return copies;
+  }
+
+  /** Stores copies of the itineraries of a search, unless the timetable changed since it started
+   * @param origin
+   * @param target
+   * @param date
+   * @param bucket
+   * @param itineraries
+   * @param generation (generation read before the search)
+   */
+  public void put(int origin, int target, LocalDate date, int bucket, List<Itinerary> itineraries, long generation){
+    List<Itinerary> copies = Collections.unmodifiableList(copies(itineraries));
+    synchronized(this){
+      if(generation == _generation)
+        _entries.put(new Key(origin, target, date, bucket), copies);
+    }
+  }
+
+  /** Discards every cached search, after a change to the timetable */
+  public synchronized void invalidate(){
+    _generation++;
+    _entries.clear();
+  }
+
+  public synchronized long getHits(){
+    return _hits;
+  }
+
+  public synchronized long getMisses(){
+    return _misses;
+  }
+
+  public synchronized int size(){
+    return _entries.size();
+  }
+
+  private static class Key {
+    private final int _origin;
+    private final int _target;
+    private final long _day;
+    private final int _bucket;
+
+    Key(int origin, int target, LocalDate date, int bucket){
+      _origin = origin;
+      _target = target;
+      _day = date.toEpochDay();
+      _bucket = bucket;
+    }
+
+    @Override
+    public boolean equals(Object object){
+      if(!(object instanceof Key))
+        return false;
+      Key key = (Key) object;
+      return _origin == key._origin && _target == key._target && _day == key._day && _bucket == key._bucket;
+    }
+
+    @Override
+    public int hashCode(){
+      int hash = _origin;
+      hash = 31 * hash + _target;
+      hash = 31 * hash + Long.hashCode(_day);
+      hash = 31 * hash + _bucket;
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package mmt;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handle of one search: the passenger who searched and the itinerary options found,
+ * in the order they were offered. Each client keeps its own handle, so searches of
+ * different clients don't interfere, and commits one of its options through it.
+ */
+public class SearchSession {
+
+  private long _sessionID;
+  private int _passengerID;
+  private List<Itinerary> _options;
+
+  /** Position of each option, numbered from 1 */
+  private Map<Itinerary, Integer> _optionNumbers;
+
+  /** Last time the session was used, in nanoseconds (System.nanoTime) */
+  private volatile long _lastAccess;
+
+  /** SearchSession Construtor
+   * @param sessionID
+   * @param passengerID
+   * @param options (itinerary options, in the order they are offered)
+   */
+  public SearchSession(long sessionID, int passengerID, List<Itinerary> options){
+    _sessionID = sessionID;
+    _passengerID = passengerID;
+    _options = Collections.unmodifiableList(options);
+    _optionNumbers = new IdentityHashMap<Itinerary, Integer>(options.size());
+    for(int i = 0; i < options.size(); i++){
+      _optionNumbers.put(options.get(i), i + 1);
+    }
+    _lastAccess = System.nanoTime();
+  }
+
+  public long getSessionID(){
+    return _sessionID;
+  }
+
+  public int getPassengerID(){
+    return _passengerID;
+  }
+
+  public List<Itinerary> getOptions(){
+    return _options;
+  }
+
+  public boolean hasOptions(){
+    return !_options.isEmpty();
+  }
+
+  /** Number of an option, as chosen in commitItinerary
+   * @param itinerary
+   * @return int (number of the option, from 1, or 0 if it isn't an option of this session)
+   */
+  public int getOptionNumber(Itinerary itinerary){
+    Integer number = _optionNumbers.get(itinerary);
+    if(number == null)
+      return 0;
+    return number;
+  }
+
+  /** Option with a certain number
+   * @param optionNumber (from 1)
+   * @return Itinerary, or null if there is no such option
+   */
+  public Itinerary getOption(int optionNumber){
+    if(optionNumber < 1 || optionNumber > _options.size())
+      return null;
+    return _options.get(optionNumber - 1);
+  }
+
+  long getLastAccess(){
+    return _lastAccess;
+  }
+
+  void touch(){
+    _lastAccess = System.nanoTime();
+  }
+}
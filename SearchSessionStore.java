@@ -0,0 +1,138 @@
+package mmt;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search sessions still open, so they can be committed later.
+ * The store is bounded: sessions unused for longer than the time to live are
+ * evicted, and when it is full the least recently used session is evicted,
+ * so abandoned searches don't keep their options in memory. A listener is told of
+ * each evicted session, so whoever else refers to it can let it go too.
+ */
+public class SearchSessionStore {
+
+  /** Default maximum number of open sessions */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /** Default time to live of an unused session, in minutes */
+  public static final long DEFAULT_TIME_TO_LIVE = 15;
+
+  /** Told of the sessions evicted by a store */
+  public interface EvictionListener {
+
+    /** Called, holding the lock of the store, after a session is evicted
+     * @param session
+     */
+    void evicted(SearchSession session);
+  }
+
+  private int _capacity;
+  private long _timeToLive;
+  private long _nextSessionID;
+  private EvictionListener _listener;
+
+  /** Open sessions, from the least to the most recently used */
+  private LinkedHashMap<Long, SearchSession> _sessions = new LinkedHashMap<Long, SearchSession>(16, 0.75f, true);
+
+  /** SearchSessionStore Construtor
+   * @param capacity (maximum number of open sessions)
+   * @param timeToLive (time an unused session is kept)
+   * @param unit (unit of timeToLive)
+   * @param listener (told of the evicted sessions, or null)
+   */
+  public SearchSessionStore(int capacity, long timeToLive, TimeUnit unit, EvictionListener listener){
+    _capacity = capacity;
+    _timeToLive = unit.toNanos(timeToLive);
+    _listener = listener;
+  }
+
+  public SearchSessionStore(int capacity, long timeToLive, TimeUnit unit){
+    this(capacity, timeToLive, unit, null);
+  }
+
+  /** SearchSessionStore Construtor, with the default capacity and time to live
+   * @param listener (told of the evicted sessions, or null)
+   */
+  public SearchSessionStore(EvictionListener listener){
+    this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE, TimeUnit.MINUTES, listener);
+  }
+
+  public SearchSessionStore(){
+    this(null);
+  }
+
+  /** Opens a session with the options of a search
+   * @param passengerID
+   * @param options
+   * @return SearchSession
+   */
+  public synchronized SearchSession open(int passengerID, List<Itinerary> options){
+    evictExpired();
+    if(_sessions.size() >= _capacity){
+      Iterator<SearchSession> eldest = _sessions.values().iterator();
+      SearchSession session = eldest.next();
+      eldest.remove();
+      evicted(session);
+    }
+    SearchSession session = new SearchSession(_nextSessionID++, passengerID, options);
+    _sessions.put(session.getSessionID(), session);
+    return session;
+  }
+
+  /** Returns an open session
+   * @param sessionID
+   * @return SearchSession, or null if it was closed or evicted
+   */
+  public synchronized SearchSession get(long sessionID){
+    SearchSession session = _sessions.get(sessionID);
+    if(session == null)
+      return null;
+    if(isExpired(session)){
+      _sessions.remove(sessionID);
+      evicted(session);
+      return null;
+    }
+    session.touch();
+    return session;
+  }
+
+  /** Closes a session. Only the very session opened by this store is closed: identifiers
+   * start over in every store, so another session with the same identifier is left open.
+   * @param session
+   * @return boolean true if the session was open, false if it was already closed or evicted
+   */
+  public synchronized boolean close(SearchSession session){
+    if(!_sessions.remove(session.getSessionID(), session))
+      return false;
+    return !isExpired(session);
+  }
+
+  public synchronized int size(){
+    evictExpired();
+    return _sessions.size();
+  }
+
+  private boolean isExpired(SearchSession session){
+    return System.nanoTime() - session.getLastAccess() > _timeToLive;
+  }
+
+  /** Evicts the expired sessions, which are the least recently used ones */
+  private void evictExpired(){
+    Iterator<SearchSession> sessions = _sessions.values().iterator();
+    while(sessions.hasNext()){
+      SearchSession session = sessions.next();
+      if(!isExpired(session))
+        break;
+      sessions.remove();
+      evicted(session);
+    }
+  }
+
+  private void evicted(SearchSession session){
+    if(_listener != null)
+      _listener.evicted(session);
+  }
+}
@@ -0,0 +1,186 @@
+package mmt;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * What one search did and where its time went: the rounds of the search, the stations
+ * expanded, the services and stops scanned, the journeys generated and discarded as
+ * dominated, and the time of each phase. A search fills it only when one is given to it.
+ */
+public class SearchStatistics {
+
+  private String _departureStation;
+  private String _arrivalStation;
+  private LocalDate _date;
+  private LocalTime _departureTime;
+  private boolean _cacheHit;
+
+  private int _rounds;
+  private long _stationsExpanded;
+  private long _servicesScanned;
+  private long _stopsScanned;
+  private long _labelsGenerated;
+  private long _labelsDiscarded;
+  private long _labelsReplaced;
+  private int _itineraries;
+
+  private long _validationNanos;
+  private long _indexNanos;
+  private long _roundsNanos;
+  private long _buildNanos;
+  private long _totalNanos;
+
+  void setQuery(String departureStation, String arrivalStation, LocalDate date, LocalTime departureTime){
+    _departureStation = departureStation;
+    _arrivalStation = arrivalStation;
+    _date = date;
+    _departureTime = departureTime;
+  }
+
+  void setCacheHit(boolean cacheHit){
+    _cacheHit = cacheHit;
+  }
+
+  /** Records the work of the rounds of the search
+   * @param rounds (rounds run, i.e. the most services of the journeys explored)
+   * @param stationsExpanded (stations whose services were boarded, over all rounds)
+   * @param servicesScanned
+   * @param stopsScanned
+   * @param labelsGenerated (journeys generated)
+   * @param labelsDiscarded (journeys generated but dominated by one already known)
+   * @param labelsReplaced (journeys known but dominated by one generated later)
+   */
+  void setWork(int rounds, long stationsExpanded, long servicesScanned, long stopsScanned,
+    long labelsGenerated, long labelsDiscarded, long labelsReplaced){
+    _rounds = rounds;
+    _stationsExpanded = stationsExpanded;
+    _servicesScanned = servicesScanned;
+    _stopsScanned = stopsScanned;
+    _labelsGenerated = labelsGenerated;
+    _labelsDiscarded = labelsDiscarded;
+    _labelsReplaced = labelsReplaced;
+  }
+
+  /** Clears the work and the times of the rounds, for a search answered without running them */
+  void clearWork(){
+    setWork(0, 0, 0, 0, 0, 0, 0);
+    _roundsNanos = 0;
+    _buildNanos = 0;
+  }
+
+  void setItineraries(int itineraries){
+    _itineraries = itineraries;
+  }
+
+  void setValidationNanos(long nanos){
+    _validationNanos = nanos;
+  }
+
+  void setIndexNanos(long nanos){
+    _indexNanos = nanos;
+  }
+
+  void setRoundsNanos(long nanos){
+    _roundsNanos = nanos;
+  }
+
+  void setBuildNanos(long nanos){
+    _buildNanos = nanos;
+  }
+
+  void setTotalNanos(long nanos){
+    _totalNanos = nanos;
+  }
+
+  public String getDepartureStation(){
+    return _departureStation;
+  }
+
+  public String getArrivalStation(){
+    return _arrivalStation;
+  }
+
+  public LocalDate getDate(){
+    return _date;
+  }
+
+  public LocalTime getDepartureTime(){
+    return _departureTime;
+  }
+
+  /** Checks if the itineraries came from the search cache, in which case there was no work to count
+   * @return boolean
+   */
+  public boolean isCacheHit(){
+    return _cacheHit;
+  }
+
+  public int getRounds(){
+    return _rounds;
+  }
+
+  public long getStationsExpanded(){
+    return _stationsExpanded;
+  }
+
+  public long getServicesScanned(){
+    return _servicesScanned;
+  }
+
+  public long getStopsScanned(){
+    return _stopsScanned;
+  }
+
+  public long getLabelsGenerated(){
+    return _labelsGenerated;
+  }
+
+  public long getLabelsDiscarded(){
+    return _labelsDiscarded;
+  }
+
+  public long getLabelsReplaced(){
+    return _labelsReplaced;
+  }
+
+  public int getItineraries(){
+    return _itineraries;
+  }
+
+  /** Time parsing the query and checking the passenger and the stations */
+  public long getValidationNanos(){
+    return _validationNanos;
+  }
+
+  /** Time getting the station index, which is rebuilt after the timetable changes */
+  public long getIndexNanos(){
+    return _indexNanos;
+  }
+
+  /** Time in the rounds of the search */
+  public long getRoundsNanos(){
+    return _roundsNanos;
+  }
+
+  /** Time building and sorting the itineraries */
+  public long getBuildNanos(){
+    return _buildNanos;
+  }
+
+  public long getTotalNanos(){
+    return _totalNanos;
+  }
+
+  @Override
+  public String toString(){
+    return _departureStation + " -> " + _arrivalStation + " " + _date + " " + _departureTime
+      + String.format(" %.1fms", _totalNanos / 1e6)
+      + (_cacheHit ? " (cached)" : "")
+      + " rounds=" + _rounds + " stations=" + _stationsExpanded + " services=" + _servicesScanned
+      + " stops=" + _stopsScanned + " generated=" + _labelsGenerated + " discarded=" + _labelsDiscarded
+      + " replaced=" + _labelsReplaced + " itineraries=" + _itineraries
+      + String.format(" validation=%.1fms index=%.1fms rounds=%.1fms build=%.1fms",
+        _validationNanos / 1e6, _indexNanos / 1e6, _roundsNanos / 1e6, _buildNanos / 1e6);
+  }
+}
@@ -2,10 +2,16 @@ package mmt;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.time.LocalTime;
 import java.time.Duration;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 
 public class Service implements Serializable{
 
@@ -14,15 +20,35 @@ public class Service implements Serializable{
 
   private int _serviceID;
   private double _servicePrice;
-  private List<Departure> _serviceDepartures = new ArrayList<Departure>();
+
+  /** Timetable stored by columns: the station of each departure */
+  private int[] _stationIDs = new int[8];
+
+  /** Timetable stored by columns: the time of each departure, in minutes since midnight */
+  private int[] _minutes = new int[8];
+
+  /** Number of departures of the service */
+  private int _numberOfDepartures;
+
+  /** Registry with the identifiers of the stations of the departures */
+  private StationRegistry _stations;
+
+  /** Positions of the departures at each station */
+  private transient volatile StopTable _stationPositions;
+
+  /** Station names of a service saved with Java serialization before the stations had
+   * identifiers, kept until restoreStations registers them (null otherwise) */
+  private transient String[] _legacyStations;
 
   /** Service Construtor
    * @param serviceID
    * @param servicePrice
+   * @param stations
    */
-  public Service(int serviceID, double servicePrice){
+  public Service(int serviceID, double servicePrice, StationRegistry stations){
     _serviceID = serviceID;
     _servicePrice = servicePrice;
+    _stations = stations;
   }
 
   public void setServiceID(int serviceID){
@@ -41,12 +67,25 @@ public class Service implements Serializable{
     return _servicePrice;
   }
 
+  /** Builds the departures of the service from the timetable columns
+   * @return List of departures
+   */
   public List<Departure> getDepartures(){
-    return _serviceDepartures;
+    List<Departure> departures = new ArrayList<Departure>(_numberOfDepartures);
+    for(int i = 0; i < _numberOfDepartures; i++){
+      departures.add(getDeparture(i));
+    }
+    return Collections.unmodifiableList(departures);
   }
 
+  /** Builds the departure at a certain position of the service
+   * @param index
+   * @return Departure
+   */
   public Departure getDeparture(int index){
-    return _serviceDepartures.get(index);
+    if(index < 0 || index >= _numberOfDepartures)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _numberOfDepartures);
+    return new Departure(getLocalTime(index), _stations.getName(_stationIDs[index]), _stationIDs[index]);
   }
 
   public Departure getDepartureStation(){
@@ -54,102 +93,292 @@ public class Service implements Serializable{
   }
 
   public Departure getArrivalStation(){
-    return getDeparture(_serviceDepartures.size() - 1);
+    return getDeparture(_numberOfDepartures - 1);
+  }
+
+  public int getStationID(int index){
+    return _stationIDs[index];
+  }
+
+  public String getStation(int index){
+    return _stations.getName(_stationIDs[index]);
+  }
+
+  public int getMinutes(int index){
+    return _minutes[index];
+  }
+
+  public LocalTime getLocalTime(int index){
+    return LocalTime.of(_minutes[index] / 60, _minutes[index] % 60);
+  }
+
+  public int getDepartureMinutes(){
+    return _minutes[0];
+  }
+
+  public int getArrivalMinutes(){
+    return _minutes[_numberOfDepartures - 1];
   }
 
   public String getNextStation(String station){
-    String nextStation = "";
-    for(int i = 0; i< _serviceDepartures.size()-1; i++){
-      Departure departure = _serviceDepartures.get(i);
-      if(departure.getStation().equals(station)){
-        nextStation = _serviceDepartures.get(i+1).getStation();
-      }
-    }
-    return nextStation;
+    int position = getNextPosition(_stations.getID(station));
+    if(position < 0)
+      return "";
+    return getStation(position + 1);
+  }
+
+  /** Position of the last departure at a station which is followed by another departure
+   * @param stationID
+   * @return int the position, or -1 if there is none
+   */
+  public int getNextPosition(int stationID){
+    buildsStationPositions();
+    return _stationPositions.getNext(stationID);
+  }
+
+  /** Position of the last departure at a station
+   * @param stationID
+   * @return int the position, or -1 if the service doesn't call at the station
+   */
+  public int getPosition(int stationID){
+    buildsStationPositions();
+    return _stationPositions.getLast(stationID);
   }
 
   public int getNumberOfDepartures(){
-    return _serviceDepartures.size();
+    return _numberOfDepartures;
   }
 
   public boolean containsDeparture(Departure departure){
-    return _serviceDepartures.contains(departure);
+    return getIndexOf(departure) >= 0;
   }
 
   public int numberofStations(){
-    return _serviceDepartures.size();
+    return _numberOfDepartures;
   }
 
   public Duration totalServiceDuration(){
-    Duration duration = Duration.between(getDepartureStation().getDepartureTime(), getArrivalStation().getDepartureTime());
-    return duration;
+    return Duration.ofMinutes(totalServiceMinutes());
+  }
+
+  public int totalServiceMinutes(){
+    return getArrivalMinutes() - getDepartureMinutes();
   }
 
   public Duration totalSegmentDuration(Departure departure1, Departure departure2){
-    Duration duration = Duration.between(departure1.getDepartureTime(), departure2.getDepartureTime());
-    return duration;
+    return Duration.ofMinutes(departure2.getMinutes() - departure1.getMinutes());
+  }
+
+  /** Minutes of travel between two positions of the service
+   * @param departurePosition
+   * @param arrivalPosition
+   * @return int
+   */
+  public int segmentMinutes(int departurePosition, int arrivalPosition){
+    return _minutes[arrivalPosition] - _minutes[departurePosition];
+  }
+
+  public Duration segmentDuration(int departurePosition, int arrivalPosition){
+    return Duration.ofMinutes(segmentMinutes(departurePosition, arrivalPosition));
   }
 
   public boolean checksFinalStation(String station){
-    if(getArrivalStation().getStation().equals(station)){
-      return true;
-    }
-    return false;
+    return checksFinalStation(_stations.getID(station));
+  }
+
+  public boolean checksFinalStation(int stationID){
+    return _stationIDs[_numberOfDepartures - 1] == stationID;
   }
 
   public double segmentPrice(Departure departure1, Departure departure2){
-    Duration totalDuration = totalServiceDuration();
-    Duration durationSegment = totalSegmentDuration(departure1, departure2);
-    long minutesTotal = totalDuration.toMinutes();
-    long minutesSegment = durationSegment.toMinutes();
-    return (_servicePrice * minutesSegment)/minutesTotal;
+    int minutesSegment = departure2.getMinutes() - departure1.getMinutes();
+    return (_servicePrice * minutesSegment)/totalServiceMinutes();
+  }
+
+  /** Price of travelling between two positions of the service
+   * @param departurePosition
+   * @param arrivalPosition
+   * @return double
+   */
+  public double segmentPrice(int departurePosition, int arrivalPosition){
+    int minutesSegment = segmentMinutes(departurePosition, arrivalPosition);
+    return (_servicePrice * minutesSegment)/totalServiceMinutes();
   }
 
   public void addDeparture(Departure departure){
-    _serviceDepartures.add(departure);
+    addDeparture(departure.getStationID(), departure.getMinutes());
   }
 
-  public boolean containsDeparture(String station){
-    boolean contains = false;
-    for(Departure departure : _serviceDepartures){
-      if(departure.getStation().equals(station)){
-        contains = true;
-      }
+  /** Adds a departure to the end of the service
+   * @param stationID
+   * @param minutes (departure time in minutes since midnight)
+   */
+  public void addDeparture(int stationID, int minutes){
+    if(_numberOfDepartures == _stationIDs.length){
+      int capacity = Math.max(4, _numberOfDepartures * 2);
+      _stationIDs = Arrays.copyOf(_stationIDs, capacity);
+      _minutes = Arrays.copyOf(_minutes, capacity);
     }
-    return contains;
+    _stationIDs[_numberOfDepartures] = stationID;
+    _minutes[_numberOfDepartures] = minutes;
+    _numberOfDepartures++;
+    if(_stationPositions != null)
+      addStationPosition(_numberOfDepartures - 1);
   }
 
-  public int getIndexDeparture(String station){
-    int i = 0;
-    for(Departure departure : _serviceDepartures){
-      if(departure.getStation().equals(station)){
-        i = _serviceDepartures.indexOf(departure);
-      }
+  /** Releases the unused capacity of the timetable columns and builds the station
+   * lookup tables, once every departure is added
+   */
+  public void trimToSize(){
+    _stationIDs = Arrays.copyOf(_stationIDs, _numberOfDepartures);
+    _minutes = Arrays.copyOf(_minutes, _numberOfDepartures);
+    buildsStationPositions();
+  }
+
+  /** Records the departure at a certain position in the station lookup tables
+   * @param position
+   */
+  private void addStationPosition(int position){
+    _stationPositions.putLast(_stationIDs[position], position);
+    if(position > 0)
+      _stationPositions.putNext(_stationIDs[position - 1], position - 1);
+  }
+
+  /** Builds the station lookup tables, if they don't exist yet (e.g. after loading a file) */
+  private void buildsStationPositions(){
+    if(_stationPositions != null)
+      return;
+    StopTable stationPositions = new StopTable(_numberOfDepartures);
+    for(int i = 0; i < _numberOfDepartures; i++){
+      stationPositions.putLast(_stationIDs[i], i);
+      if(i > 0)
+        stationPositions.putNext(_stationIDs[i - 1], i - 1);
     }
-    return i;
+    _stationPositions = stationPositions;
+  }
+
+  public boolean containsDeparture(String station){
+    return getPosition(_stations.getID(station)) >= 0;
+  }
+
+  public int getIndexDeparture(String station){
+    return Math.max(getPosition(_stations.getID(station)), 0);
   }
 
   public LocalTime getTime(String station){
-    LocalTime time = LocalTime.of(0,0);
-    for(Departure departure : _serviceDepartures){
-      if(departure.getStation().equals(station)){
-        time = departure.getDepartureTime();
-      }
-    }
-    return time;
+    int position = getPosition(_stations.getID(station));
+    if(position < 0)
+      return LocalTime.of(0,0);
+    return getLocalTime(position);
   }
 
   public int getIndexOf(Departure departure){
-    return _serviceDepartures.indexOf(departure);
+    for(int i = 0; i < _numberOfDepartures; i++){
+      if(_stationIDs[i] == departure.getStationID() && _minutes[i] == departure.getMinutes())
+        return i;
+    }
+    return -1;
+  }
+
+  /** Position of the departure at a station at a certain time, comparing the station by name
+   * @param station
+   * @param minutes (minutes since midnight)
+   * @return int the position, or -1 if the service has no such departure
+   */
+  public int getIndexOf(String station, int minutes){
+    for(int i = 0; i < _numberOfDepartures; i++){
+      String name = _legacyStations != null ? _legacyStations[i] : getStation(i);
+      if(_minutes[i] == minutes && name.equals(station))
+        return i;
+    }
+    return -1;
+  }
+
+  /** Writes the departure at a certain position as "HH:mm station"
+   * @param out
+   * @param index
+   * @throws IOException on error on writing
+   */
+  public void appendDeparture(Appendable out, int index) throws IOException{
+    int minutes = _minutes[index];
+    out.append((char) ('0' + minutes / 600)).append((char) ('0' + minutes / 60 % 10)).append(':')
+      .append((char) ('0' + minutes % 60 / 10)).append((char) ('0' + minutes % 10))
+      .append(' ').append(getStation(index));
+  }
+
+  /** Writes the service as toString does, without the final line break
+   * @param out
+   * @throws IOException on error on writing
+   */
+  public void appendTo(Appendable out) throws IOException{
+    out.append("Serviço #").append(String.valueOf(_serviceID)).append(" @ ").append(String.format("%.2f", _servicePrice));
+    for(int i = 0; i < _numberOfDepartures; i++){
+      out.append('\n');
+      appendDeparture(out, i);
+    }
+  }
+
+  /** Reads a service, converting the list of departures of the services saved before
+   * the timetable was kept by columns. Their stations only get identifiers when
+   * restoreStations is called with the registry of their company.
+   * @param in
+   * @throws IOException on error on reading, or if a departure is missing
+   * @throws ClassNotFoundException if a class of the service isn't found
+   */
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+    ObjectInputStream.GetField fields = in.readFields();
+    _serviceID = fields.get("_serviceID", 0);
+    _servicePrice = fields.get("_servicePrice", 0.0);
+    // only the fields of this class can be asked if they were defaulted, and services
+    // saved before the timetable columns have no _stationIDs
+    if(!fields.defaulted("_stationIDs")){
+      _stationIDs = (int[]) fields.get("_stationIDs", null);
+      _minutes = (int[]) fields.get("_minutes", null);
+      _numberOfDepartures = fields.get("_numberOfDepartures", 0);
+      _stations = (StationRegistry) fields.get("_stations", null);
+      return;
+    }
+    List<Departure> departures = (List<Departure>) fields.get("_serviceDepartures", null);
+    _numberOfDepartures = departures.size();
+    _minutes = new int[_numberOfDepartures];
+    _legacyStations = new String[_numberOfDepartures];
+    for(int i = 0; i < _numberOfDepartures; i++){
+      Departure departure = departures.get(i);
+      if(departure == null || departure.getStation() == null || departure.getDepartureTime() == null)
+        throw new InvalidObjectException("Service " + _serviceID + " has an incomplete departure");
+      _minutes[i] = departure.getMinutes();
+      _legacyStations[i] = departure.getStation();
+    }
+  }
+
+  /** Gives identifiers to the stations of a service read from a file saved before the
+   * stations had identifiers; other services are left as they are
+   * @param stations (registry of the company of the service)
+   */
+  void restoreStations(StationRegistry stations){
+    if(_legacyStations == null)
+      return;
+    int[] stationIDs = new int[_numberOfDepartures];
+    for(int i = 0; i < _numberOfDepartures; i++){
+      stationIDs[i] = stations.register(_legacyStations[i]);
+    }
+    _stations = stations;
+    _stationIDs = stationIDs;
+    _stationPositions = null;
+    _legacyStations = null;
   }
 
   @Override
   @SuppressWarnings("nls")
   public String toString(){
-    String printService =  "Serviço #"+_serviceID+" @ "+String.format("%.2f", _servicePrice)+"\n";
-    for(Departure departure : _serviceDepartures){
-      printService += departure.toString();
+    StringBuilder printService = new StringBuilder();
+    try{
+      appendTo(printService);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
     }
-    return printService.trim();
+    return printService.toString().trim();
   }
 }
@@ -0,0 +1,103 @@
+package mmt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statistics of the most recent searches slower than a threshold, so slow
+ * searches can be explained after they happened. The log is bounded, dropping
+ * the oldest search when it is full.
+ */
+public class SlowQueryLog {
+
+  /** Default threshold, in milliseconds */
+  public static final long DEFAULT_THRESHOLD = 100;
+
+  /** Default maximum number of searches kept */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private final long _threshold;
+  private final int _capacity;
+  private long _logged;
+  private Deque<SearchStatistics> _entries = new ArrayDeque<SearchStatistics>();
+
+  /** SlowQueryLog Construtor
+   * @param threshold (searches taking at least this long are logged)
+   * @param unit (unit of threshold)
+   * @param capacity (maximum number of searches kept)
+   * @throws IllegalArgumentException if the threshold is negative or the capacity isn't positive
+   */
+  public SlowQueryLog(long threshold, TimeUnit unit, int capacity){
+    if(threshold < 0)
+      throw new IllegalArgumentException("Negative threshold " + threshold);
+    if(capacity < 1)
+      throw new IllegalArgumentException("A slow query log needs room for at least one search, not " + capacity);
+    _threshold = unit.toNanos(threshold);
+    _capacity = capacity;
+  }
+
+  public SlowQueryLog(){
+    this(DEFAULT_THRESHOLD, TimeUnit.MILLISECONDS, DEFAULT_CAPACITY);
+  }
+
+  /** Logs the statistics of a search, if it was slow
+   * @param statistics
+   * @return boolean true if the search was logged
+   */
+  public boolean offer(SearchStatistics statistics){
+    if(statistics.getTotalNanos() < _threshold)
+      return false;
+    synchronized(this){
+      if(_entries.size() >= _capacity)
+        _entries.removeFirst();
+      _entries.addLast(statistics);
+      _logged++;
+    }
+    return true;
+  }
+
+  /** Returns the searches in the log
+   * @return List of statistics, from the oldest to the most recent search
+   */
+  public synchronized List<SearchStatistics> getEntries(){
+    return new ArrayList<SearchStatistics>(_entries);
+  }
+
+  /** Gets the number of searches logged, including those dropped since
+   * @return long
+   */
+  public synchronized long getLogged(){
+    return _logged;
+  }
+
+  public synchronized void clear(){
+    _entries.clear();
+  }
+
+  /** Writes the searches in the log, one per line, from the oldest to the most recent
+   * @param out
+   * @throws IOException on error on writing
+   */
+  public void appendTo(Appendable out) throws IOException{
+    for(SearchStatistics statistics : getEntries()){
+      out.append(statistics.toString()).append('\n');
+    }
+  }
+
+  @Override
+  public String toString(){
+    StringBuilder log = new StringBuilder();
+    try{
+      appendTo(log);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    return log.toString();
+  }
+}
@@ -0,0 +1,363 @@
+package mmt;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary snapshot of a train company.
+ * After the magic number and the version, the file has one section per kind of
+ * entry (stations, services, categories, passengers and itineraries), each one preceded by
+ * its tag and length. Stations and the categories of the passengers are written once,
+ * as string tables, and everything else refers to them by position; numbers are written as varints.
+ * The last section has the generation of the last journal already included in the snapshot.
+ * Snapshots are written in one go through a FileChannel and read from a memory mapped file.
+ */
+public class Snapshot {
+
+  /** "MMTS" */
+  public static final int MAGIC = 0x4D4D5453;
+
+  public static final int VERSION = 2;
+
+  /** Categories of the snapshots of version 1, which kept the position of the category in the
+   * default category table instead of a table of their own */
+  private static final List<String> VERSION_1_CATEGORIES = Arrays.asList(CategoryType.NORMAL.getName(),
+    CategoryType.FREQUENT.getName(), CategoryType.SPECIAL.getName());
+
+  private static final int END = 0;
+  private static final int STATIONS = 1;
+  private static final int SERVICES = 2;
+  private static final int PASSENGERS = 3;
+  private static final int ITINERARIES = 4;
+  private static final int JOURNAL = 5;
+  private static final int CATEGORIES = 6;
+
+  /** Encodes the whole state of a train company, stopping its changes meanwhile
+   * @param company
+   * @return SnapshotOutput with the encoded snapshot
+   */
+  public static SnapshotOutput encode(TrainCompany company){
+    company.lockChanges();
+    try{
+      return encodeUnchanging(company);
+    }
+    finally{
+      company.unlockChanges();
+    }
+  }
+
+  private static SnapshotOutput encodeUnchanging(TrainCompany company){
+    SnapshotOutput output = new SnapshotOutput();
+    output.writeInt(MAGIC);
+    output.writeVarInt(VERSION);
+    SnapshotOutput section = new SnapshotOutput();
+
+    StationRegistry stations = company.getStationRegistry();
+    section.writeVarInt(stations.size());
+    for(int i = 0; i < stations.size(); i++){
+      section.writeString(stations.getName(i));
+    }
+    writeSection(output, STATIONS, section);
+
+    section.writeVarInt(company.showAllServices().size());
+    for(Service service : company.showAllServices()){
+      section.writeSignedVarInt(service.getServiceID());
+      section.writeDouble(service.getServicePrice());
+      section.writeVarInt(service.getNumberOfDepartures());
+      int previousMinutes = 0;
+      for(int i = 0; i < service.getNumberOfDepartures(); i++){
+        section.writeVarInt(service.getStationID(i));
+        section.writeSignedVarInt(service.getMinutes(i) - previousMinutes);
+        previousMinutes = service.getMinutes(i);
+      }
+    }
+    writeSection(output, SERVICES, section);
+
+    Map<String, Integer> categories = new LinkedHashMap<String, Integer>();
+    SnapshotOutput passengers = new SnapshotOutput();
+    passengers.writeVarInt(company.getNumberOfPassengers());
+    passengers.writeVarInt(company.showAllPassengers().size());
+    for(Passenger passenger : company.showAllPassengers()){
+      synchronized(passenger){
+        passengers.writeVarInt(passenger.getID());
+        passengers.writeString(passenger.getName());
+        passengers.writeVarInt(categoryCode(categories, passenger.getCategory()));
+        passengers.writeVarInt(passenger.getNumberOfItineraries());
+        passengers.writeDouble(passenger.getTotalPaidValue());
+        passengers.writeSignedVarLong(passenger.getTotalTime().toMinutes());
+      }
+    }
+    section.writeVarInt(categories.size());
+    for(String category : categories.keySet()){
+      section.writeString(category);
+    }
+    writeSection(output, CATEGORIES, section);
+    writeSection(output, PASSENGERS, passengers);
+
+    for(Passenger passenger : company.showAllPassengers()){
+      synchronized(passenger){
+        if(passenger.getItineraries().isEmpty())
+          continue;
+        section.writeVarInt(passenger.getID());
+        section.writeVarInt(passenger.getItineraries().size());
+        for(Itinerary itinerary : passenger.getItineraries()){
+          writeItinerary(section, itinerary);
+        }
+      }
+    }
+    writeSection(output, ITINERARIES, section);
+
+    section.writeVarLong(company.getJournalGeneration());
+    writeSection(output, JOURNAL, section);
+
+    output.writeVarInt(END);
+    return output;
+  }
+
+  private static void writeSection(SnapshotOutput output, int tag, SnapshotOutput section){
+    output.writeVarInt(tag);
+    output.writeSection(section);
+    section.clear();
+  }
+
+  /** Writes an itinerary as its date and a (service, departure position, arrival position) triple per leg
+   * @param output
+   * @param itinerary
+   */
+  public static void writeItinerary(SnapshotOutput output, Itinerary itinerary){
+    List<Service> services = itinerary.getServices();
+    output.writeSignedVarLong(itinerary.getItineraryDate().toEpochDay());
+    output.writeVarInt(services.size());
+    for(int i = 0; i < services.size(); i++){
+      output.writeSignedVarInt(services.get(i).getServiceID());
+      output.writeVarInt(itinerary.getDeparturePosition(i));
+      output.writeVarInt(itinerary.getArrivalPosition(i));
+    }
+  }
+
+  /** Reads an itinerary written by writeItinerary
+   * @param input
+   * @param company (company with the services of the itinerary)
+   * @return Itinerary
+   * @throws IOException if the itinerary refers to an unknown service
+   */
+  public static Itinerary readItinerary(SnapshotInput input, TrainCompany company) throws IOException{
+    Itinerary itinerary = new Itinerary(LocalDate.ofEpochDay(input.readSignedVarLong()));
+    int legs = input.readVarInt();
+    for(int i = 0; i < legs; i++){
+      int serviceID = input.readSignedVarInt();
+      Service service = company.getServiceTree().get(serviceID);
+      if(service == null)
+        throw new IOException("Snapshot refers to unknown service " + serviceID);
+      int departurePosition = input.readVarInt();
+      itinerary.addLeg(service, departurePosition, input.readVarInt());
+    }
+    return itinerary;
+  }
+
+  /** Code of a category: its position in the table of the categories of the snapshot,
+   * where it is added the first time it is used
+   * @param categories (names of the categories of the snapshot, with their codes)
+   * @param category
+   * @return int
+   */
+  private static int categoryCode(Map<String, Integer> categories, CategoryType category){
+    Integer code = categories.get(category.getName());
+    if(code == null){
+      code = categories.size();
+      categories.put(category.getName(), code);
+    }
+    return code;
+  }
+
+  /** Category with a certain code, found by name in the category table in use
+   * @param categories (names of the categories of the snapshot)
+   * @param code
+   * @return CategoryType
+   * @throws IOException if there is no such code, or the category table has no category with its name
+   */
+  private static CategoryType category(List<String> categories, int code) throws IOException{
+    if(code < 0 || code >= categories.size())
+      throw new IOException("Snapshot refers to unknown category " + code);
+    CategoryType category = CategoryTable.getTable().getCategory(categories.get(code));
+    if(category == null)
+      throw new IOException("Snapshot refers to category " + categories.get(code) + ", which isn't in the category table");
+    return category;
+  }
+
+  /** Saves a train company to a file
+   * @param company
+   * @param filename
+   * @throws IOException on error on writing the file
+   */
+  public static void save(TrainCompany company, String filename) throws IOException{
+    write(encode(company), filename);
+  }
+
+  /** Writes an encoded snapshot to a temporary file and then moves it over the file,
+   * so a crash never leaves a partially written snapshot
+   * @param output (encoded snapshot)
+   * @param filename
+   * @throws IOException on error on writing the file
+   */
+  public static void write(SnapshotOutput output, String filename) throws IOException{
+    Path path = Paths.get(filename).toAbsolutePath();
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+      output.writeTo(channel);
+      channel.force(true);
+    }
+    try{
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(AtomicMoveNotSupportedException e){
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** Checks if a file starts with the snapshot magic number
+   * @param filename
+   * @return boolean
+   * @throws IOException on error on reading the file
+   */
+  public static boolean isSnapshot(String filename) throws IOException{
+    try(DataInputStream in = new DataInputStream(new FileInputStream(filename))){
+      return in.available() >= 4 && in.readInt() == MAGIC;
+    }
+  }
+
+  /** Loads a train company from a file, either a snapshot or a file saved with Java serialization
+   * @param filename
+   * @return TrainCompany
+   * @throws IOException on error on reading the file, or if it is malformed
+   * @throws ClassNotFoundException if a serialized file refers to unknown classes
+   */
+  public static TrainCompany load(String filename) throws IOException, ClassNotFoundException{
+    if(!isSnapshot(filename)){
+      try(ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))){
+        return (TrainCompany) in.readObject();
+      }
+    }
+    Path path = Paths.get(filename);
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+      if(channel.size() > Integer.MAX_VALUE)
+        throw new IOException("Snapshot too large to map: " + filename);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return decode(new SnapshotInput(buffer));
+    }
+  }
+
+  /** Decodes a snapshot
+   * @param input
+   * @return TrainCompany
+   * @throws IOException if the snapshot is malformed or of an unknown version
+   */
+  public static TrainCompany decode(SnapshotInput input) throws IOException{
+    if(input.readInt() != MAGIC)
+      throw new IOException("Not a snapshot");
+    int version = input.readVarInt();
+    if(version != 1 && version != VERSION)
+      throw new IOException("Unsupported snapshot version " + version);
+    TrainCompany company = new TrainCompany();
+    List<String> categories = version == 1 ? VERSION_1_CATEGORIES : new ArrayList<String>();
+    int tag;
+    while((tag = input.readVarInt()) != END){
+      SnapshotInput section = input.readSection();
+      if(tag == STATIONS)
+        readStations(section, company);
+      else if(tag == SERVICES)
+        readServices(section, company);
+      else if(tag == CATEGORIES)
+        readCategories(section, categories);
+      else if(tag == PASSENGERS)
+        readPassengers(section, company, categories);
+      else if(tag == ITINERARIES)
+        readItineraries(section, company);
+      else if(tag == JOURNAL)
+        company.setJournalGeneration(section.readVarLong());
+    }
+    return company;
+  }
+
+  private static void readStations(SnapshotInput input, TrainCompany company) throws IOException{
+    StationRegistry stations = company.getStationRegistry();
+    int count = input.readVarInt();
+    for(int i = 0; i < count; i++){
+      stations.register(input.readString());
+    }
+  }
+
+  private static void readServices(SnapshotInput input, TrainCompany company) throws IOException{
+    StationRegistry stations = company.getStationRegistry();
+    int count = input.readVarInt();
+    for(int i = 0; i < count; i++){
+      int serviceID = input.readSignedVarInt();
+      double price = input.readDouble();
+      String[] names = new String[input.readVarInt()];
+      int[] minutes = new int[names.length];
+      int previousMinutes = 0;
+      for(int j = 0; j < names.length; j++){
+        int station = input.readVarInt();
+        if(station < 0 || station >= stations.size())
+          throw new IOException("Snapshot refers to unknown station " + station);
+        names[j] = stations.getName(station);
+        minutes[j] = previousMinutes + input.readSignedVarInt();
+        previousMinutes = minutes[j];
+      }
+      company.registerService(serviceID, price, names, minutes);
+    }
+  }
+
+  private static void readCategories(SnapshotInput input, List<String> categories) throws IOException{
+    int count = input.readVarInt();
+    for(int i = 0; i < count; i++){
+      categories.add(input.readString());
+    }
+  }
+
+  private static void readPassengers(SnapshotInput input, TrainCompany company, List<String> categories) throws IOException{
+    company.setNumberOfPassengers(input.readVarInt());
+    int count = input.readVarInt();
+    for(int i = 0; i < count; i++){
+      Passenger passenger = new Passenger(input.readVarInt(), input.readString());
+      CategoryType category = category(categories, input.readVarInt());
+      int numberOfItineraries = input.readVarInt();
+      double paidValue = input.readDouble();
+      Duration totalTime = Duration.ofMinutes(input.readSignedVarLong());
+      passenger.restoreState(category, numberOfItineraries, paidValue, totalTime);
+      company.restorePassenger(passenger);
+    }
+  }
+
+  private static void readItineraries(SnapshotInput input, TrainCompany company) throws IOException{
+    while(input.hasRemaining()){
+      int passengerID = input.readVarInt();
+      Passenger passenger = company.getPassengerTree().get(passengerID);
+      if(passenger == null)
+        throw new IOException("Snapshot refers to unknown passenger " + passengerID);
+      int count = input.readVarInt();
+      for(int i = 0; i < count; i++){
+        passenger.restoreItinerary(readItinerary(input, company));
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package mmt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the primitive encodings written by SnapshotOutput from a ByteBuffer,
+ * usually a memory mapped file.
+ */
+public class SnapshotInput {
+
+  private ByteBuffer _buffer;
+
+  /** SnapshotInput Construtor
+   * @param buffer
+   */
+  public SnapshotInput(ByteBuffer buffer){
+    _buffer = buffer;
+  }
+
+  public boolean hasRemaining(){
+    return _buffer.hasRemaining();
+  }
+
+  public int position(){
+    return _buffer.position();
+  }
+
+  /** CRC32 checksum of the bytes not read yet, without reading them
+   * @return int
+   */
+  public int checksum(){
+    CRC32 crc = new CRC32();
+    crc.update(_buffer.duplicate());
+    return (int) crc.getValue();
+  }
+
+  public int readByte() throws IOException{
+    try{
+      return _buffer.get() & 0xFF;
+    }
+    catch(BufferUnderflowException e){
+      throw new IOException("Truncated snapshot", e);
+    }
+  }
+
+  public int readInt() throws IOException{
+    try{
+      return _buffer.getInt();
+    }
+    catch(BufferUnderflowException e){
+      throw new IOException("Truncated snapshot", e);
+    }
+  }
+
+  /** Reads a section written by SnapshotOutput.writeSection
+   * @return SnapshotInput over the contents of the section
+   * @throws IOException if the section is truncated
+   */
+  public SnapshotInput readSection() throws IOException{
+    int length = readVarInt();
+    if(length < 0 || length > _buffer.remaining())
+      throw new IOException("Truncated snapshot");
+    ByteBuffer section = _buffer.slice();
+    section.limit(length);
+    _buffer.position(_buffer.position() + length);
+    return new SnapshotInput(section);
+  }
+
+  public int readVarInt() throws IOException{
+    return (int) readVarLong();
+  }
+
+  public long readVarLong() throws IOException{
+    long value = 0;
+    for(int shift = 0; shift < 64; shift += 7){
+      int b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if((b & 0x80) == 0)
+        return value;
+    }
+    throw new IOException("Malformed varint in snapshot");
+  }
+
+  public int readSignedVarInt() throws IOException{
+    int value = readVarInt();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public long readSignedVarLong() throws IOException{
+    long value = readVarLong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public double readDouble() throws IOException{
+    long high = readInt() & 0xFFFFFFFFL;
+    long low = readInt() & 0xFFFFFFFFL;
+    return Double.longBitsToDouble((high << 32) | low);
+  }
+
+  public String readString() throws IOException{
+    int length = readVarInt();
+    if(length < 0 || length > _buffer.remaining())
+      throw new IOException("Truncated snapshot");
+    byte[] bytes = new byte[length];
+    _buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,128 @@
+package mmt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Growable byte buffer with the primitive encodings of the binary snapshot
+ * format: varints, zigzag varints for signed values, raw doubles and UTF-8 strings.
+ */
+public class SnapshotOutput {
+
+  private byte[] _bytes;
+  private int _size;
+
+  /** SnapshotOutput Construtor
+   * @param capacity (initial capacity in bytes)
+   */
+  public SnapshotOutput(int capacity){
+    _bytes = new byte[Math.max(capacity, 16)];
+  }
+
+  public SnapshotOutput(){
+    this(4096);
+  }
+
+  private void ensureCapacity(int extra){
+    if(_size + extra > _bytes.length)
+      _bytes = Arrays.copyOf(_bytes, Math.max(_bytes.length * 2, _size + extra));
+  }
+
+  public int size(){
+    return _size;
+  }
+
+  public void clear(){
+    _size = 0;
+  }
+
+  public void writeByte(int value){
+    ensureCapacity(1);
+    _bytes[_size++] = (byte) value;
+  }
+
+  public void writeBytes(byte[] bytes, int offset, int length){
+    ensureCapacity(length);
+    System.arraycopy(bytes, offset, _bytes, _size, length);
+    _size += length;
+  }
+
+  /** Writes another buffer, preceded by its length
+   * @param output
+   */
+  public void writeSection(SnapshotOutput output){
+    writeVarInt(output.size());
+    writeBytes(output._bytes, 0, output.size());
+  }
+
+  public void writeInt(int value){
+    ensureCapacity(4);
+    _bytes[_size++] = (byte) (value >>> 24);
+    _bytes[_size++] = (byte) (value >>> 16);
+    _bytes[_size++] = (byte) (value >>> 8);
+    _bytes[_size++] = (byte) value;
+  }
+
+  /** Writes a non negative int in 1 to 5 bytes, 7 bits at a time
+   * @param value
+   */
+  public void writeVarInt(int value){
+    writeVarLong(value & 0xFFFFFFFFL);
+  }
+
+  public void writeVarLong(long value){
+    ensureCapacity(10);
+    while((value & ~0x7FL) != 0){
+      _bytes[_size++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    _bytes[_size++] = (byte) value;
+  }
+
+  /** Writes a signed int with zigzag encoding, so small negative values stay short
+   * @param value
+   */
+  public void writeSignedVarInt(int value){
+    writeVarInt((value << 1) ^ (value >> 31));
+  }
+
+  public void writeSignedVarLong(long value){
+    writeVarLong((value << 1) ^ (value >> 63));
+  }
+
+  public void writeDouble(double value){
+    long bits = Double.doubleToLongBits(value);
+    writeInt((int) (bits >>> 32));
+    writeInt((int) bits);
+  }
+
+  public void writeString(String value){
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(bytes.length);
+    writeBytes(bytes, 0, bytes.length);
+  }
+
+  /** CRC32 checksum of the buffer contents
+   * @return int
+   */
+  public int checksum(){
+    CRC32 crc = new CRC32();
+    crc.update(_bytes, 0, _size);
+    return (int) crc.getValue();
+  }
+
+  /** Writes the buffer contents to a channel
+   * @param channel
+   * @throws IOException on error on writing
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException{
+    ByteBuffer buffer = ByteBuffer.wrap(_bytes, 0, _size);
+    while(buffer.hasRemaining()){
+      channel.write(buffer);
+    }
+  }
+}
@@ -2,25 +2,23 @@ package mmt;
 
 import java.io.Serializable;
 
+/**
+ * Only kept to read files saved with Java serialization, which have one
+ * category object per passenger; it is replaced by CategoryType.SPECIAL.
+ * @deprecated categories are now the shared instances of CategoryType
+ */
+@Deprecated
 public class SpecialCategory extends CategoryType implements Serializable{
 
   /** Serial number for serialization. */
   private static final long serialVersionUID = 201708301010L;
 
-  /** Passenger Construtor
-   * @param passenger
-   */
-  public SpecialCategory(Passenger passenger){
-    super(passenger);
+  private SpecialCategory(){
+    super(CategoryType.SPECIAL.getName(), CategoryType.SPECIAL.getDiscount(), CategoryType.SPECIAL.getMinimumPaidValue());
   }
 
   @Override
-  public double getDiscount(){
-    return 0.50;
-  }
-
-  @Override
-  public String toString(){
-    return "ESPECIAL";
+  protected Object readResolve(){
+    return CategoryType.SPECIAL;
   }
 }
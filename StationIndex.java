@@ -0,0 +1,93 @@
+package mmt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inverted index of the timetable: for each station identifier, the stops
+ * of the services calling at it, ordered by service ID and position.
+ * The index is built once from the services; a change to the timetable
+ * discards it, and the next search builds a new one.
+ */
+public class StationIndex {
+
+  /** Stops at each station, indexed by the station identifier */
+  private List<List<StationStop>> _stops = new ArrayList<List<StationStop>>();
+
+  /** StationIndex Construtor
+   * @param services (services to be indexed)
+   */
+  public StationIndex(Collection<Service> services){
+    for(Service service : services){
+      addService(service);
+    }
+  }
+
+  /** Adds every stop of a service to the index
+   * @param service
+   */
+  private void addService(Service service){
+    for(int i = 0; i < service.getNumberOfDepartures(); i++){
+      int station = service.getStationID(i);
+      while(_stops.size() <= station)
+        _stops.add(new ArrayList<StationStop>());
+      List<StationStop> stops = _stops.get(station);
+      stops.add(insertionPoint(stops, service.getServiceID()), new StationStop(service, i));
+    }
+  }
+
+  /** Index after the last stop whose service ID isn't greater than serviceID
+   * @param stops
+   * @param serviceID
+   * @return int
+   */
+  private int insertionPoint(List<StationStop> stops, int serviceID){
+    int low = 0;
+    int high = stops.size();
+    if(high == 0 || stops.get(high - 1).getService().getServiceID() <= serviceID)
+      return high;
+    while(low < high){
+      int middle = (low + high) >>> 1;
+      if(stops.get(middle).getService().getServiceID() <= serviceID)
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /** Checks if any service calls at a station
+   * @param station (identifier of the station, negative if it isn't registered)
+   * @return boolean
+   */
+  public boolean containsStation(int station){
+    return station >= 0 && station < _stops.size() && !_stops.get(station).isEmpty();
+  }
+
+  /** Latest time at or before a certain time at which a service leaves a station.
+   * Searches from any time between it and the next departure board the same services.
+   * @param station (identifier of the station)
+   * @param minutes (minutes since midnight)
+   * @return int minutes since midnight, or -1 if no service leaves the station until then
+   */
+  public int lastDepartureUntil(int station, int minutes){
+    int last = -1;
+    for(StationStop stop : getStops(station)){
+      if(!stop.isLastStop() && stop.getMinutes() <= minutes && stop.getMinutes() > last)
+        last = stop.getMinutes();
+    }
+    return last;
+  }
+
+  /** Returns the stops of every service calling at a station
+   * @param station (identifier of the station, negative if it isn't registered)
+   * @return List of stops, empty if no service calls at the station
+   */
+  public List<StationStop> getStops(int station){
+    if(station < 0 || station >= _stops.size())
+      return Collections.emptyList();
+    return Collections.unmodifiableList(_stops.get(station));
+  }
+}
@@ -0,0 +1,74 @@
+package mmt;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the station names known to a train company. Each name gets a
+ * dense integer identifier, so stations can be compared as ints and used
+ * as array indexes.
+ * Lookups don't lock, so they can run concurrently with registrations.
+ */
+public class StationRegistry implements Serializable {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 201708301010L;
+
+  /** Identifier of each station name */
+  private Map<String, Integer> _stationIDs = new ConcurrentHashMap<String, Integer>();
+
+  /** Station names, indexed by their identifier (new stations are rare, so the list is copied on write) */
+  private List<String> _stationNames = new CopyOnWriteArrayList<String>();
+
+  /** Registers a station name, if it isn't registered yet
+   * @param name
+   * @return int identifier of the station
+   */
+  public synchronized int register(String name){
+    Integer id = _stationIDs.get(name);
+    if(id == null){
+      id = _stationNames.size();
+      _stationNames.add(name);
+      _stationIDs.put(name, id);
+    }
+    return id;
+  }
+
+  /** Returns the identifier of a station
+   * @param name
+   * @return int identifier of the station, or -1 if the name isn't registered
+   */
+  public int getID(String name){
+    Integer id = _stationIDs.get(name);
+    if(id == null)
+      return -1;
+    return id;
+  }
+
+  /** Returns the name of a station
+   * @param id
+   * @return String the name registered with that identifier
+   */
+  public String getName(int id){
+    return _stationNames.get(id);
+  }
+
+  /** Gets the number of stations registered
+   * @return int
+   */
+  public int size(){
+    return _stationNames.size();
+  }
+
+  /** Replaces the collections of files saved with Java serialization by concurrent ones */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+    in.defaultReadObject();
+    _stationIDs = new ConcurrentHashMap<String, Integer>(_stationIDs);
+    _stationNames = new CopyOnWriteArrayList<String>(_stationNames);
+  }
+}
@@ -0,0 +1,44 @@
+package mmt;
+
+/**
+ * A stop of a service at a station: the service and the position
+ * of the departure within that service.
+ */
+public class StationStop {
+
+  private Service _service;
+  private int _position;
+
+  /** StationStop Construtor
+   * @param service
+   * @param position (index of the departure within the service)
+   */
+  public StationStop(Service service, int position){
+    _service = service;
+    _position = position;
+  }
+
+  public Service getService(){
+    return _service;
+  }
+
+  public int getPosition(){
+    return _position;
+  }
+
+  public Departure getDeparture(){
+    return _service.getDeparture(_position);
+  }
+
+  public int getMinutes(){
+    return _service.getMinutes(_position);
+  }
+
+  public boolean isFirstStop(){
+    return _position == 0;
+  }
+
+  public boolean isLastStop(){
+    return _position == _service.getNumberOfDepartures() - 1;
+  }
+}
@@ -0,0 +1,115 @@
+package mmt;
+
+import java.util.Arrays;
+
+/**
+ * Compact lookup from station identifiers to positions of the departures
+ * of a service, stored in open addressing int arrays.
+ * For each station it keeps the position of the last departure at that station
+ * and of the last departure at that station that is followed by another one.
+ */
+public class StopTable {
+
+  private static final int EMPTY = -1;
+
+  private int[] _stations;
+  private int[] _lastPositions;
+  private int[] _nextPositions;
+  private int _size;
+
+  /** StopTable Construtor
+   * @param expectedStations (number of stations the table is sized for)
+   */
+  public StopTable(int expectedStations){
+    int capacity = 4;
+    while(capacity < expectedStations * 2)
+      capacity <<= 1;
+    _stations = new int[capacity];
+    _lastPositions = new int[capacity];
+    _nextPositions = new int[capacity];
+    Arrays.fill(_stations, EMPTY);
+  }
+
+  /** Slot of a station: either the slot holding it or the empty slot where it belongs
+   * @param station
+   * @return int
+   */
+  private int slot(int station){
+    int mask = _stations.length - 1;
+    int slot = (station * 0x9E3779B9) >>> 16 & mask;
+    while(_stations[slot] != EMPTY && _stations[slot] != station)
+      slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  private int slotFor(int station){
+    int slot = slot(station);
+    if(_stations[slot] == EMPTY){
+      if((_size + 1) * 2 > _stations.length){
+        grow();
+        slot = slot(station);
+      }
+      _stations[slot] = station;
+      _lastPositions[slot] = EMPTY;
+      _nextPositions[slot] = EMPTY;
+      _size++;
+    }
+    return slot;
+  }
+
+  private void grow(){
+    int[] stations = _stations;
+    int[] lastPositions = _lastPositions;
+    int[] nextPositions = _nextPositions;
+    _stations = new int[stations.length * 2];
+    _lastPositions = new int[stations.length * 2];
+    _nextPositions = new int[stations.length * 2];
+    Arrays.fill(_stations, EMPTY);
+    for(int i = 0; i < stations.length; i++){
+      if(stations[i] != EMPTY){
+        int slot = slot(stations[i]);
+        _stations[slot] = stations[i];
+        _lastPositions[slot] = lastPositions[i];
+        _nextPositions[slot] = nextPositions[i];
+      }
+    }
+  }
+
+  /** Records a departure at a station
+   * @param station
+   * @param position
+   */
+  public void putLast(int station, int position){
+    _lastPositions[slotFor(station)] = position;
+  }
+
+  /** Records a departure at a station which is followed by another departure
+   * @param station
+   * @param position
+   */
+  public void putNext(int station, int position){
+    _nextPositions[slotFor(station)] = position;
+  }
+
+  /** Position of the last departure at a station
+   * @param station
+   * @return int the position, or -1 if the service doesn't call at the station
+   */
+  public int getLast(int station){
+    int slot = slot(station);
+    if(_stations[slot] == EMPTY)
+      return EMPTY;
+    return _lastPositions[slot];
+  }
+
+  /** Position of the last departure at a station which is followed by another departure
+   * @param station
+   * @return int the position, or -1 if there is none
+   */
+  public int getNext(int station){
+    int slot = slot(station);
+    if(_stations[slot] == EMPTY)
+      return EMPTY;
+    return _nextPositions[slot];
+  }
+}
@@ -2,12 +2,8 @@ package mmt;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
 import mmt.exceptions.BadDateSpecificationException;
 import mmt.exceptions.BadTimeSpecificationException;
@@ -19,27 +15,44 @@ import mmt.exceptions.NoSuchServiceIdException;
 import mmt.exceptions.NoSuchStationNameException;
 import mmt.exceptions.NoSuchItineraryChoiceException;
 import mmt.exceptions.NonUniquePassengerNameException;
+import mmt.TicketOfficeMetrics.Operation;
 import java.text.ParseException;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
 
 /**
  * Façade for handling persistence and other functions.
+ * It can be shared by several terminals: saving, loading and resetting are
+ * serialized, and everything else runs concurrently on the train company.
  */
 public class TicketOffice{
 
   //** The object doing most of the actual work. */
-  private TrainCompany _trains;
+  private volatile TrainCompany _trains;
 
   /** The name of the file we are working on */
   private String _programFile;
 
+  /** Journal of the changes since the file was last saved, if there is a file */
+  private Journal _journal;
+
+  /** Calls, errors and latencies of the operations of the office */
+  private final TicketOfficeMetrics _metrics = new TicketOfficeMetrics();
+
+  /** Log of the slow searches, or null if the searches aren't logged */
+  private volatile SlowQueryLog _slowQueryLog;
+
+  /** Pool for the parallel searches, kept across load and reset, or null to search sequentially */
+  private ForkJoinPool _searchPool;
+
   //** Construtor do TicketOffice */
   public TicketOffice(){
     _trains = new TrainCompany();
@@ -48,7 +61,7 @@ public class TicketOffice{
   /** Saves the current state of the program within a file
    * @return _programFile This is the string associated with the filename
    */
-  public String getProgramFile(){
+  public synchronized String getProgramFile(){
     return _programFile;
   }
 
@@ -59,43 +72,92 @@ public class TicketOffice{
   * @see mmt.exceptions.ImportFileException
   */
   public void importFile(String datafile) throws ImportFileException{
-      _trains.importFile(datafile);
+    measure(Operation.IMPORT_FILE, new Work<Void, ImportFileException, RuntimeException>(){
+      @Override
+      public Void run() throws ImportFileException{
+        _trains.importFile(datafile);
+        return null;
+      }
+    });
   }
 
   /** Resets the program, erasing the passengers and itineraries, keeping the services
    */
-  public void reset() {
-    Map<Integer,Service>_servicesOld = _trains.getServiceTree();
-    _programFile = null;
-    _trains.resetTree();
-    TrainCompany newTrains = new TrainCompany();
-    _trains = newTrains;
-    _trains.setServiceTree(_servicesOld);
+  public synchronized void reset() {
+    measure(Operation.RESET, new Work<Void, RuntimeException, RuntimeException>(){
+      @Override
+      public Void run(){
+        closeJournal();
+        Map<Integer,Service>_servicesOld = _trains.getServiceTree();
+        StationRegistry stations = _trains.getStationRegistry();
+        _programFile = null;
+        _trains.resetTree();
+        TrainCompany newTrains = new TrainCompany();
+        newTrains.setSearchPool(_searchPool);
+        _trains = newTrains;
+        _trains.setServiceTree(_servicesOld, stations);
+        return null;
+      }
+    });
   }
 
 
-  /** Saves the current state of the program within a file
+  /** Saves the current state of the program within a file, as a binary Snapshot,
+   * and starts journaling the changes made from now on
    * @param filename
    */
-  public void save(String filename) throws IOException, ClassNotFoundException{
-    ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename));
-    out.writeObject(_trains);
-    out.close();
-    _programFile = filename;
+  public synchronized void save(String filename) throws IOException, ClassNotFoundException{
+    measure(Operation.SAVE, new Work<Void, IOException, ClassNotFoundException>(){
+      @Override
+      public Void run() throws IOException, ClassNotFoundException{
+        closeJournal();
+        _journal = Journal.create(_trains, filename);
+        _programFile = filename;
+        return null;
+      }
+    });
   }
 
-  public void save() throws IOException, ClassNotFoundException{
-    save(_programFile);
+  /** Saves the changes made since the file was last saved, by appending them to its journal
+   */
+  public synchronized void save() throws IOException, ClassNotFoundException{
+    if(_journal == null){
+      save(_programFile);
+      return;
+    }
+    measure(Operation.SAVE, new Work<Void, IOException, ClassNotFoundException>(){
+      @Override
+      public Void run() throws IOException, ClassNotFoundException{
+        _journal.commit();
+        return null;
+      }
+    });
   }
 
-  /** Loads a previous state of the program saved within a file
+  /** Loads a previous state of the program saved within a file,
+   * either a binary Snapshot or a file saved with Java serialization,
+   * together with the changes in its journal
    * @param filename
    */
-  public void load(String filename) throws FileNotFoundException, IOException, ClassNotFoundException {
-    ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename));
-    _trains = (TrainCompany) in.readObject();
-    in.close();
-    _programFile = filename;
+  public synchronized void load(String filename) throws FileNotFoundException, IOException, ClassNotFoundException {
+    measure(Operation.LOAD, new Work<Void, IOException, ClassNotFoundException>(){
+      @Override
+      public Void run() throws IOException, ClassNotFoundException{
+        Journal journal = Journal.recover(filename);
+        closeJournal();
+        _journal = journal;
+        journal.getCompany().setSearchPool(_searchPool);
+        _trains = journal.getCompany();
+        _programFile = filename;
+        return null;
+      }
+    });
+  }
+
+  private void closeJournal(){
+    if(_journal != null)
+      _journal.close();
+    _journal = null;
   }
 
   /** Register the passenger if his name doesnt already exist in the treemap
@@ -104,7 +166,13 @@ public class TicketOffice{
    * @see mmt.exceptions.NonUniquePassengerNameException
    */
   public void registerPassenger(String name) throws NonUniquePassengerNameException{
-    _trains.registerPassenger(name);
+    measure(Operation.REGISTER_PASSENGER, new Work<Void, NonUniquePassengerNameException, RuntimeException>(){
+      @Override
+      public Void run() throws NonUniquePassengerNameException{
+        _trains.registerPassenger(name);
+        return null;
+      }
+    });
   }
 
   /** Changes the passenger's ID name to a new one given by the user
@@ -116,7 +184,13 @@ public class TicketOffice{
    * @see mmt.exceptions.NoSuchPassengerIdException
    */
   public void changePassengerName(int passengerID, String name) throws NonUniquePassengerNameException, NoSuchPassengerIdException{
-    _trains.changePassengerName(passengerID, name);
+    measure(Operation.CHANGE_PASSENGER_NAME, new Work<Void, NonUniquePassengerNameException, NoSuchPassengerIdException>(){
+      @Override
+      public Void run() throws NonUniquePassengerNameException, NoSuchPassengerIdException{
+        _trains.changePassengerName(passengerID, name);
+        return null;
+      }
+    });
   }
 
   /** Prints a passenger if the ID inserted by the user exists
@@ -126,7 +200,12 @@ public class TicketOffice{
    * @see mmt.exceptions.NoSuchPassengerIdException
    */
   public Passenger showPassengerById(int passengerID) throws NoSuchPassengerIdException{
-    return _trains.showPassengerById(passengerID);
+    return measure(Operation.SHOW_PASSENGER, new Work<Passenger, NoSuchPassengerIdException, RuntimeException>(){
+      @Override
+      public Passenger run() throws NoSuchPassengerIdException{
+        return _trains.showPassengerById(passengerID);
+      }
+    });
   }
 
   /** Prints a passenger if the ID inserted by the user exists
@@ -136,7 +215,12 @@ public class TicketOffice{
    * @see mmt.exceptions.NoSuchServiceIdException
    */
   public Service showServiceByID(int serviceID) throws NoSuchServiceIdException{
-    return _trains.showServiceByID(serviceID);
+    return measure(Operation.SHOW_SERVICE, new Work<Service, NoSuchServiceIdException, RuntimeException>(){
+      @Override
+      public Service run() throws NoSuchServiceIdException{
+        return _trains.showServiceByID(serviceID);
+      }
+    });
   }
 
   /** Prints a service if the ID inserted by the user exists
@@ -144,14 +228,37 @@ public class TicketOffice{
    * @return Collection of Services
    */
   public Collection<Passenger> showAllPassengers(){
-    return _trains.showAllPassengers();
+    return measure(Operation.SHOW_ALL_PASSENGERS, new Work<Collection<Passenger>, RuntimeException, RuntimeException>(){
+      @Override
+      public Collection<Passenger> run(){
+        return _trains.showAllPassengers();
+      }
+    });
+  }
+
+  /** Finds the passengers whose name starts with a prefix
+   * @param prefix
+   * @return Collection of Passengers sorted by name
+   */
+  public Collection<Passenger> findPassengersByNamePrefix(String prefix){
+    return measure(Operation.FIND_PASSENGERS, new Work<Collection<Passenger>, RuntimeException, RuntimeException>(){
+      @Override
+      public Collection<Passenger> run(){
+        return _trains.findPassengersByNamePrefix(prefix);
+      }
+    });
   }
 
   /** Prints all registered Services
    * @return Collection of Services
    */
   public Collection<Service> showAllServices(){
-    return _trains.showAllServices();
+    return measure(Operation.SHOW_ALL_SERVICES, new Work<Collection<Service>, RuntimeException, RuntimeException>(){
+      @Override
+      public Collection<Service> run(){
+        return _trains.showAllServices();
+      }
+    });
   }
 
   /**Checks if a certain station name corresponds to the first station of a service
@@ -162,7 +269,12 @@ public class TicketOffice{
    * as the departure station
    */
   public Collection<Service> showServiceByDepartingStation(String stationName) throws NoSuchStationNameException{
-    return _trains.showServiceByDepartingStation(stationName);
+    return measure(Operation.SHOW_SERVICES_BY_STATION, new Work<Collection<Service>, NoSuchStationNameException, RuntimeException>(){
+      @Override
+      public Collection<Service> run() throws NoSuchStationNameException{
+        return _trains.showServiceByDepartingStation(stationName);
+      }
+    });
   }
 
 
@@ -173,7 +285,12 @@ public class TicketOffice{
    * @return Collection of Services This collection is ordered by arrival time
    */
   public Collection<Service> showServiceByArrivingStation(String stationName) throws NoSuchStationNameException{
-    return _trains.showServiceByArrivingStation(stationName);
+    return measure(Operation.SHOW_SERVICES_BY_STATION, new Work<Collection<Service>, NoSuchStationNameException, RuntimeException>(){
+      @Override
+      public Collection<Service> run() throws NoSuchStationNameException{
+        return _trains.showServiceByArrivingStation(stationName);
+      }
+    });
   }
 
   /** Shows each itinerary associated with a certain passengerID
@@ -183,7 +300,30 @@ public class TicketOffice{
   * @return String with all the associated itineraries for the passengerID
   */
   public String showItinerarybyPassenger(int passengerID) throws NoSuchPassengerIdException{
-    return _trains.showItinerarybyPassenger(passengerID);
+    return measure(Operation.SHOW_PASSENGER_ITINERARIES, new Work<String, NoSuchPassengerIdException, RuntimeException>(){
+      @Override
+      public String run() throws NoSuchPassengerIdException{
+        return _trains.showItinerarybyPassenger(passengerID);
+      }
+    });
+  }
+
+  /** Writes a page of the itineraries associated with a certain passengerID
+  * @param passengerID
+  * @param out
+  * @param offset (number of itineraries to skip)
+  * @param limit (maximum number of itineraries to write)
+  * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
+  * @throws exception IOException on error on writing
+  */
+  public void showItinerarybyPassenger(int passengerID, Appendable out, int offset, int limit) throws NoSuchPassengerIdException, IOException{
+    measure(Operation.SHOW_PASSENGER_ITINERARIES, new Work<Void, NoSuchPassengerIdException, IOException>(){
+      @Override
+      public Void run() throws NoSuchPassengerIdException, IOException{
+        _trains.showItinerarybyPassenger(passengerID, out, offset, limit);
+        return null;
+      }
+    });
   }
 
   /** Shows all itineraries associated with every passenger registered to the TrainCompany
@@ -191,7 +331,28 @@ public class TicketOffice{
   * the TrainCompany, if the passenger has itineraries
   */
   public String showAllItineraries(){
-    return _trains.showAllItineraries();
+    return measure(Operation.SHOW_ALL_ITINERARIES, new Work<String, RuntimeException, RuntimeException>(){
+      @Override
+      public String run(){
+        return _trains.showAllItineraries();
+      }
+    });
+  }
+
+  /** Writes a page of the itineraries of every passenger, without building the whole report in memory
+  * @param out
+  * @param offset (number of itineraries of each passenger to skip)
+  * @param limit (maximum number of itineraries of each passenger to write)
+  * @throws exception IOException on error on writing
+  */
+  public void showAllItineraries(Appendable out, int offset, int limit) throws IOException{
+    measure(Operation.SHOW_ALL_ITINERARIES, new Work<Void, IOException, RuntimeException>(){
+      @Override
+      public Void run() throws IOException{
+        _trains.showAllItineraries(out, offset, limit);
+        return null;
+      }
+    });
   }
 
   /** Function which handles all of the things associated with the search algorythm
@@ -209,27 +370,201 @@ public class TicketOffice{
   */
   public Collection<Itinerary> search(int passengerId, String departureStation, String arrivalStation, String departureDate,
    String departureTime) throws NoSuchStationNameException, NoSuchPassengerIdException{
-     return _trains.search(passengerId, departureStation, arrivalStation, departureDate, departureTime);
+    return search(passengerId, departureStation, arrivalStation, departureDate, departureTime, null);
+  }
+
+  /** Searches like search, recording what the search did in statistics
+  * @param passengerId
+  * @param departureStation
+  * @param arrivalStation
+  * @param departureDate
+  * @param departureTime
+  * @param statistics (filled by the search, or null)
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with the station desired by the user
+  * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
+  * @return Collection of itineraries, as in search
+  */
+  public Collection<Itinerary> search(int passengerId, String departureStation, String arrivalStation, String departureDate,
+   String departureTime, SearchStatistics statistics) throws NoSuchStationNameException, NoSuchPassengerIdException{
+    final SlowQueryLog slowQueries = _slowQueryLog;
+    final SearchStatistics searchStatistics = statistics == null && slowQueries != null ? new SearchStatistics() : statistics;
+    return measure(Operation.SEARCH, new Work<Collection<Itinerary>, NoSuchStationNameException, NoSuchPassengerIdException>(){
+      @Override
+      public Collection<Itinerary> run() throws NoSuchStationNameException, NoSuchPassengerIdException{
+        Collection<Itinerary> itineraries = _trains.search(passengerId, departureStation, arrivalStation, departureDate, departureTime, searchStatistics);
+        if(slowQueries != null)
+          slowQueries.offer(searchStatistics);
+        return itineraries;
+      }
+    });
+  }
+
+  /** Searches the itineraries for a passenger, keeping the options in a session of their own
+  * @param passengerId
+  * @param departureStation
+  * @param arrivalStation
+  * @param departureDate
+  * @param departureTime
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with the station desired by the user
+  * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
+  * @return SearchSession with the options, numbered by getOptionNumber
+  */
+  public SearchSession searchSession(int passengerId, String departureStation, String arrivalStation, String departureDate,
+   String departureTime) throws NoSuchStationNameException, NoSuchPassengerIdException{
+    return searchSession(passengerId, departureStation, arrivalStation, departureDate, departureTime, null);
+  }
+
+  /** Searches like searchSession, recording what the search did in statistics
+  * @param passengerId
+  * @param departureStation
+  * @param arrivalStation
+  * @param departureDate
+  * @param departureTime
+  * @param statistics (filled by the search, or null)
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with the station desired by the user
+  * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
+  * @return SearchSession with the options, numbered by getOptionNumber
+  */
+  public SearchSession searchSession(int passengerId, String departureStation, String arrivalStation, String departureDate,
+   String departureTime, SearchStatistics statistics) throws NoSuchStationNameException, NoSuchPassengerIdException{
+    final SlowQueryLog slowQueries = _slowQueryLog;
+    final SearchStatistics searchStatistics = statistics == null && slowQueries != null ? new SearchStatistics() : statistics;
+    return measure(Operation.SEARCH, new Work<SearchSession, NoSuchStationNameException, NoSuchPassengerIdException>(){
+      @Override
+      public SearchSession run() throws NoSuchStationNameException, NoSuchPassengerIdException{
+        SearchSession session = _trains.searchSession(passengerId, departureStation, arrivalStation, departureDate, departureTime, searchStatistics);
+        if(slowQueries != null)
+          slowQueries.offer(searchStatistics);
+        return session;
+      }
+    });
+  }
+
+  /** Finds the earliest arrival from the departureStation at each of the arrivalStations
+  * with a single search, instead of one search for each of them
+  * @param departureStation
+  * @param arrivalStations
+  * @param departureDate
+  * @param departureTime
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with one of the stations desired by the user
+  * @return ArrivalTable with a row for each arrival station, in the same order
+  */
+  public ArrivalTable searchArrivals(String departureStation, String[] arrivalStations, String departureDate,
+   String departureTime) throws NoSuchStationNameException{
+    return measure(Operation.SEARCH_ARRIVALS, new Work<ArrivalTable, NoSuchStationNameException, RuntimeException>(){
+      @Override
+      public ArrivalTable run() throws NoSuchStationNameException{
+        return _trains.searchArrivals(departureStation, arrivalStations, departureDate, departureTime);
+      }
+    });
+  }
+
+  /** Finds the earliest arrival from each of the departureStations at each of the arrivalStations,
+  * with a single search for each departure station
+  * @param departureStations
+  * @param arrivalStations
+  * @param departureDate
+  * @param departureTime
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with one of the stations desired by the user
+  * @return List with an ArrivalTable for each departure station, in the same order
+  */
+  public List<ArrivalTable> searchArrivals(String[] departureStations, String[] arrivalStations, String departureDate,
+   String departureTime) throws NoSuchStationNameException{
+    return measure(Operation.SEARCH_ARRIVALS, new Work<List<ArrivalTable>, NoSuchStationNameException, RuntimeException>(){
+      @Override
+      public List<ArrivalTable> run() throws NoSuchStationNameException{
+        return _trains.searchArrivals(departureStations, arrivalStations, departureDate, departureTime);
+      }
+    });
+  }
+
+  /** Gets the calls, errors and latencies of the operations of the office
+   * @return TicketOfficeMetrics
+   */
+  public TicketOfficeMetrics getMetrics(){
+    return _metrics;
+  }
+
+  /** Makes the searches explore the journeys starting with each service from the departure
+   * station in parallel, so long searches use every core of the pool
+   * @param searchPool (for instance ForkJoinPool.commonPool(), or null to search sequentially)
+   */
+  public synchronized void setSearchPool(ForkJoinPool searchPool){
+    _searchPool = searchPool;
+    _trains.setSearchPool(searchPool);
+  }
+
+  /** Starts logging the searches slower than the threshold of a log, with their statistics
+   * @param slowQueryLog (null to stop logging)
+   */
+  public void setSlowQueryLog(SlowQueryLog slowQueryLog){
+    _slowQueryLog = slowQueryLog;
+  }
+
+  public SlowQueryLog getSlowQueryLog(){
+    return _slowQueryLog;
   }
 
-  /** Function which returns the index of the itinerary within the List
-  * @param Itinerary
-  * @return int (index of the itinerary)
+  /** Gets the number of searches answered from the search cache
+   * @return long
+   */
+  public long getSearchCacheHits(){
+    return _trains.getSearchCache().getHits();
+  }
+
+  /** Gets the number of searches that had to be computed
+   * @return long
+   */
+  public long getSearchCacheMisses(){
+    return _trains.getSearchCache().getMisses();
+  }
+
+  /** Number of an itinerary among the options of the last search of a passenger
+  * @param passengerId
+  * @param itinerary (option returned by search)
+  * @return int (number of the option, from 1, or 0 if it isn't an option of the passenger waiting to be committed)
   */
+  public int getItineraryIndex(int passengerId, Itinerary itinerary){
+    return _trains.getItineraryIndex(passengerId, itinerary);
+  }
+
+  /** Number of an itinerary among the options of the last search of its passenger
+  * @param itinerary (option returned by search)
+  * @return int (number of the option, from 1, or 0 if it isn't an option waiting to be committed)
+  * @deprecated looks through the searches of every passenger; use getItineraryIndex(int, Itinerary)
+  */
+  @Deprecated
   public int getItineraryIndex(Itinerary itinerary){
     return _trains.getItineraryIndex(itinerary);
   }
 
+  /** Checks if the last search of a passenger found no itinerary options
+  * @param passengerId
+  * @return boolean true if there are no options to commit for the passenger
+  */
+  public boolean checksItineraries(int passengerId){
+    return _trains.checksItineraries(passengerId);
+  }
+
   /** Function which checks if the itinerary options are empty
   * @return boolean
   * true if the itinerary options are empty
   * false if it isn't
+  * @deprecated answers for the last search of any passenger; use checksItineraries(int)
+  * or the options of a SearchSession
   */
+  @Deprecated
   public boolean checksItineraries(){
     return _trains.checksItineraries();
   }
 
-  /** Functions which inserts the itinerary into the passenger
+  /** Functions which inserts the itinerary into the passenger, choosing among the options
+  * of the last search of that passenger
   * @param passengerId
   * @param itineraryId
   * @throws exception NoSuchItineraryChoiceException if the number inserted doesn't
@@ -237,7 +572,60 @@ public class TicketOffice{
   * @see mmt.exceptions.NoSuchItineraryChoiceException
   */
   public void commitItinerary(int passengerId, int itineraryId) throws NoSuchItineraryChoiceException{
-     _trains.commitItinerary(passengerId, itineraryId);
+    measure(Operation.COMMIT_ITINERARY, new Work<Void, NoSuchItineraryChoiceException, RuntimeException>(){
+      @Override
+      public Void run() throws NoSuchItineraryChoiceException{
+        _trains.commitItinerary(passengerId, itineraryId);
+        return null;
+      }
+    });
+  }
+
+  /** Inserts one of the options of a search session into its passenger
+  * @param session
+  * @param itineraryId
+  * @throws exception NoSuchItineraryChoiceException if the number inserted doesn't
+  * belong to any of the itinerary choices, or if the session expired
+  * @see mmt.exceptions.NoSuchItineraryChoiceException
+  */
+  public void commitItinerary(SearchSession session, int itineraryId) throws NoSuchItineraryChoiceException{
+    measure(Operation.COMMIT_ITINERARY, new Work<Void, NoSuchItineraryChoiceException, RuntimeException>(){
+      @Override
+      public Void run() throws NoSuchItineraryChoiceException{
+        _trains.commitItinerary(session, itineraryId);
+        return null;
+      }
+    });
+  }
+
+  /** Work of an operation of the office, run by measure
+   * @param <T> (result of the operation, Void if none)
+   * @param <E1> (checked exception of the operation, RuntimeException if none)
+   * @param <E2> (another checked exception of the operation, RuntimeException if none)
+   */
+  private interface Work<T, E1 extends Exception, E2 extends Exception> {
+    T run() throws E1, E2;
+  }
+
+  /** Runs the work of an operation, recording its latency, and its error if it fails, in the metrics
+   * @param operation
+   * @param work
+   * @return T the result of the work
+   * @throws E1 if the work throws it
+   * @throws E2 if the work throws it
+   */
+  private <T, E1 extends Exception, E2 extends Exception> T measure(Operation operation, Work<T, E1, E2> work) throws E1, E2{
+    long start = System.nanoTime();
+    try{
+      return work.run();
+    }
+    catch(Throwable e){
+      _metrics.error(operation);
+      throw e;
+    }
+    finally{
+      _metrics.record(operation, start);
+    }
   }
 
 }
@@ -0,0 +1,165 @@
+package mmt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Calls, errors and latency histograms of the operations of a TicketOffice.
+ * Recording takes no lock, so it costs little more than reading the clock twice.
+ * The metrics can be read directly, as a text report, or through JMX once registered.
+ */
+public class TicketOfficeMetrics implements TicketOfficeMetricsMBean {
+
+  /** Operations of the TicketOffice that are measured */
+  public enum Operation {
+    IMPORT_FILE, SAVE, LOAD, RESET,
+    REGISTER_PASSENGER, CHANGE_PASSENGER_NAME, SHOW_PASSENGER, SHOW_ALL_PASSENGERS, FIND_PASSENGERS,
+    SHOW_SERVICE, SHOW_ALL_SERVICES, SHOW_SERVICES_BY_STATION,
+    SHOW_PASSENGER_ITINERARIES, SHOW_ALL_ITINERARIES,
+    SEARCH, SEARCH_ARRIVALS, COMMIT_ITINERARY
+  }
+
+  /** Number of the next metrics registered through JMX, so each office gets a name of its own */
+  private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+  private final LatencyHistogram[] _latencies = new LatencyHistogram[Operation.values().length];
+  private final LongAdder[] _errors = new LongAdder[Operation.values().length];
+
+  /** Name under which the metrics are registered in the platform MBean server, or null */
+  private ObjectName _objectName;
+
+  /** TicketOfficeMetrics Construtor */
+  public TicketOfficeMetrics(){
+    for(int i = 0; i < _latencies.length; i++){
+      _latencies[i] = new LatencyHistogram();
+      _errors[i] = new LongAdder();
+    }
+  }
+
+  /** Records a call that has ended
+   * @param operation
+   * @param start (System.nanoTime() when the call started)
+   */
+  public void record(Operation operation, long start){
+    _latencies[operation.ordinal()].record(System.nanoTime() - start);
+  }
+
+  /** Records that a call ended with an exception (the call itself is recorded by record)
+   * @param operation
+   */
+  public void error(Operation operation){
+    _errors[operation.ordinal()].increment();
+  }
+
+  public LatencyHistogram getLatencies(Operation operation){
+    return _latencies[operation.ordinal()];
+  }
+
+  public long getCalls(Operation operation){
+    return _latencies[operation.ordinal()].getCount();
+  }
+
+  public long getErrors(Operation operation){
+    return _errors[operation.ordinal()].sum();
+  }
+
+  @Override
+  public String[] getOperationNames(){
+    Operation[] operations = Operation.values();
+    String[] names = new String[operations.length];
+    for(int i = 0; i < operations.length; i++){
+      names[i] = operations[i].name();
+    }
+    return names;
+  }
+
+  @Override
+  public long getCalls(String operation){
+    return getCalls(Operation.valueOf(operation));
+  }
+
+  @Override
+  public long getErrors(String operation){
+    return getErrors(Operation.valueOf(operation));
+  }
+
+  @Override
+  public double getPercentileMicros(String operation, double percentile){
+    return getLatencies(Operation.valueOf(operation)).getPercentile(percentile) / 1000.0;
+  }
+
+  @Override
+  public void reset(){
+    for(int i = 0; i < _latencies.length; i++){
+      _latencies[i].reset();
+      _errors[i].reset();
+    }
+  }
+
+  /** Registers the metrics in the platform MBean server, as mmt:type=TicketOffice,id=<number>,
+   * unless they are already registered
+   * @return ObjectName under which they are registered
+   * @throws JMException if they can't be registered
+   */
+  public synchronized ObjectName registerMBean() throws JMException{
+    if(_objectName == null){
+      ObjectName name = new ObjectName("mmt:type=TicketOffice,id=" + NEXT_ID.getAndIncrement());
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+      _objectName = name;
+    }
+    return _objectName;
+  }
+
+  /** Removes the metrics from the platform MBean server, if they are registered,
+   * so the server no longer keeps them alive
+   * @throws JMException if they can't be unregistered
+   */
+  public synchronized void unregisterMBean() throws JMException{
+    if(_objectName == null)
+      return;
+    ManagementFactory.getPlatformMBeanServer().unregisterMBean(_objectName);
+    _objectName = null;
+  }
+
+  /** Writes a table with the calls, errors and latencies, in microseconds, of the operations called
+   * @param out
+   * @throws IOException on error on writing
+   */
+  public void appendTo(Appendable out) throws IOException{
+    out.append(String.format("%-28s %10s %8s %12s %12s %12s %12s %12s %12s%n",
+      "operation", "calls", "errors", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)"));
+    for(Operation operation : Operation.values()){
+      LatencyHistogram latencies = getLatencies(operation);
+      long calls = latencies.getCount();
+      if(calls == 0)
+        continue;
+      out.append(String.format("%-28s %10d %8d %12.1f %12.1f %12.1f %12.1f %12.1f %12.1f%n",
+        operation.name().toLowerCase(), calls, getErrors(operation), latencies.getMean() / 1000,
+        latencies.getPercentile(50) / 1000.0, latencies.getPercentile(90) / 1000.0,
+        latencies.getPercentile(99) / 1000.0, latencies.getPercentile(99.9) / 1000.0, latencies.getMax() / 1000.0));
+    }
+  }
+
+  @Override
+  public String getReport(){
+    StringBuilder report = new StringBuilder();
+    try{
+      appendTo(report);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    return report.toString();
+  }
+
+  @Override
+  public String toString(){
+    return getReport();
+  }
+}
@@ -0,0 +1,24 @@
+package mmt;
+
+/**
+ * Management interface of the TicketOffice metrics, as seen through JMX.
+ * Operations are named as in TicketOfficeMetrics.Operation, e.g. "SEARCH".
+ */
+public interface TicketOfficeMetricsMBean {
+
+  /** Names of the operations measured */
+  String[] getOperationNames();
+
+  /** Table with the calls, errors and latencies of every operation */
+  String getReport();
+
+  long getCalls(String operation);
+
+  long getErrors(String operation);
+
+  /** Latency of an operation at a certain percentile (from 0 to 100), in microseconds */
+  double getPercentileMicros(String operation, double percentile);
+
+  /** Forgets the calls, errors and latencies recorded so far */
+  void reset();
+}
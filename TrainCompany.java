@@ -1,10 +1,10 @@
 package mmt;
 
 import java.io.Serializable;
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
 
 import mmt.exceptions.BadDateSpecificationException;
 import mmt.exceptions.BadEntryException;
@@ -25,15 +25,23 @@ import java.time.LocalTime;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.TreeMap;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.time.format.DateTimeParseException;
 
 /**
  * A train company has schedules (services) for its trains and passengers that
  * acquire itineraries based on those schedules.
+ * A train company can be shared by several terminals: passengers and services are
+ * kept in concurrent maps and the search engines are published whole, so reads
+ * don't lock; each passenger is locked while acquiring an itinerary.
  */
 public class TrainCompany implements Serializable {
 
@@ -41,20 +49,66 @@ public class TrainCompany implements Serializable {
   private static final long serialVersionUID = 201708301010L;
 
   /** Passengers who use the ticket office */
-  private Map<Integer, Passenger> _passengers = new TreeMap<Integer, Passenger>();
+  private Map<Integer, Passenger> _passengers = new ConcurrentSkipListMap<Integer, Passenger>();
 
   /** Services included in the ticket office */
-  private Map<Integer, Service> _services = new TreeMap<Integer, Service>();
+  private Map<Integer, Service> _services = new ConcurrentSkipListMap<Integer, Service>();
+
+  /** Identifiers of the stations of the services */
+  private StationRegistry _stations = new StationRegistry();
 
-  /** Corresponds to the list of itinerares found in the search function **/
-  private List<Itinerary> _itineraryOptions = new ArrayList<Itinerary>();
 
   /**  Corresponds to the number of passengers who use the Train Company **/
-  private int _passengerID = 0;
+  private volatile int _passengerID = 0;
+
+  /** Allocates the passenger IDs atomically **/
+  private static final AtomicIntegerFieldUpdater<TrainCompany> PASSENGER_ID =
+    AtomicIntegerFieldUpdater.newUpdater(TrainCompany.class, "_passengerID");
+
+  /** Generation of the last journal whose changes are already part of this state **/
+  private long _journalGeneration = 0;
+
+  /** Journal receiving the changes, if the company is associated with a file **/
+  private transient volatile Journal _journal;
+
+  /** Search engine built from the services, rebuilt whenever the timetable changes **/
+  private transient volatile ConnectionScan _connectionScan;
+
+  /** Stops of the services for each station, rebuilt whenever the timetable changes **/
+  private transient volatile StationIndex _stationIndex;
+
+  /** Passengers by name, kept up to date by registerPassenger and changePassengerName **/
+  private transient volatile PassengerDirectory _passengerDirectory;
+
+  /** Shared by the changes, which can run concurrently, and held exclusively while taking a snapshot **/
+  private transient ReentrantReadWriteLock _changes = new ReentrantReadWriteLock();
+
+  /** Search sessions not committed yet **/
+  private transient SearchSessionStore _searchSessions = searchSessionStore();
+
+  /** Session of the last search of each passenger made with search, committed by commitItinerary(int, int) **/
+  private transient Map<Integer, SearchSession> _passengerSessions = new ConcurrentHashMap<Integer, SearchSession>();
+
+  /** Session of the last search made with search, by any passenger **/
+  private transient volatile SearchSession _lastSearch;
+
+  /** Results of the most frequent searches, invalidated whenever the timetable changes **/
+  private transient SearchCache _searchCache = new SearchCache();
+
+  /** Pool exploring the first services of each search in parallel, or null to search in the caller's thread **/
+  private transient volatile ForkJoinPool _searchPool;
 
   /** Clears the already existing TreeMaps */
   public void resetTree(){
     _passengers.clear();
+    _passengerDirectory = null;
+  }
+
+  /** Return the passengers tree
+   * @return _passengers This is the Map with the passengers inside them
+   */
+  public Map<Integer, Passenger> getPassengerTree(){
+    return _passengers;
   }
 
   /** Return the services tree
@@ -64,11 +118,133 @@ public class TrainCompany implements Serializable {
     return _services;
   }
 
+  /** Return the registry with the stations of the services
+   * @return _stations
+   */
+  public StationRegistry getStationRegistry(){
+    return _stations;
+  }
+
   /** Set a new service tree
    * @param servicesTree
+   * @param stations (registry with the stations of those services)
+   */
+  public synchronized void setServiceTree(Map<Integer, Service> servicesTree, StationRegistry stations){
+    _services = new ConcurrentSkipListMap<Integer, Service>(servicesTree);
+    _stations = stations;
+    _connectionScan = null;
+    _stationIndex = null;
+    _searchCache.invalidate();
+  }
+
+  /** Sets the pool where the searches explore the journeys starting with each service in parallel
+   * @param searchPool (null to search in the thread of the caller)
+   */
+  public void setSearchPool(ForkJoinPool searchPool){
+    _searchPool = searchPool;
+    _searchCache.invalidate();
+  }
+
+  public ForkJoinPool getSearchPool(){
+    return _searchPool;
+  }
+
+  /** Returns the station index for the current services, building it if needed.
+   * The index is never changed once built, so it can be used without locking.
+   * @return StationIndex
    */
-  public void setServiceTree(Map<Integer, Service> servicesTree){
-    _services = servicesTree;
+  private StationIndex stationIndex(){
+    StationIndex stationIndex = _stationIndex;
+    if(stationIndex == null){
+      synchronized(this){
+        if(_stationIndex == null)
+          _stationIndex = new StationIndex(_services.values());
+        stationIndex = _stationIndex;
+      }
+    }
+    return stationIndex;
+  }
+
+  /** Returns the passenger directory, building it if needed
+   * @return PassengerDirectory
+   */
+  private PassengerDirectory passengerDirectory(){
+    PassengerDirectory passengerDirectory = _passengerDirectory;
+    if(passengerDirectory == null){
+      synchronized(this){
+        if(_passengerDirectory == null)
+          _passengerDirectory = new PassengerDirectory(_passengers.values());
+        passengerDirectory = _passengerDirectory;
+      }
+    }
+    return passengerDirectory;
+  }
+
+  /** Returns the connection scan engine for the current services, building it if needed
+   * @return ConnectionScan
+   */
+  private ConnectionScan connectionScan(){
+    ConnectionScan connectionScan = _connectionScan;
+    if(connectionScan == null){
+      synchronized(this){
+        if(_connectionScan == null)
+          _connectionScan = new ConnectionScan(_services.values(), _stations);
+        connectionScan = _connectionScan;
+      }
+    }
+    return connectionScan;
+  }
+
+  /** Stops every change to the company until unlockChanges is called, so that a snapshot
+   * has every change already recorded in the journal and no other
+   */
+  public void lockChanges(){
+    _changes.writeLock().lock();
+  }
+
+  public void unlockChanges(){
+    _changes.writeLock().unlock();
+  }
+
+  /** Rebuilds the concurrent maps and the lock of a company saved with Java serialization,
+   * and the station registry of the companies saved before the stations had identifiers
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+    in.defaultReadObject();
+    _passengers = new ConcurrentSkipListMap<Integer, Passenger>(_passengers);
+    _services = new ConcurrentSkipListMap<Integer, Service>(_services);
+    if(_stations == null){
+      _stations = new StationRegistry();
+      for(Service service : _services.values()){
+        service.restoreStations(_stations);
+      }
+      for(Passenger passenger : _passengers.values()){
+        for(Itinerary itinerary : passenger.getItineraries()){
+          for(Service service : itinerary.getServices()){
+            service.restoreStations(_stations);
+          }
+        }
+      }
+    }
+    _changes = new ReentrantReadWriteLock();
+    _searchSessions = searchSessionStore();
+    _passengerSessions = new ConcurrentHashMap<Integer, SearchSession>();
+    _searchCache = new SearchCache();
+  }
+
+  /** Store of the search sessions, which forgets the last search of a passenger
+   * when its session is evicted, so abandoned searches don't keep their options
+   * @return SearchSessionStore
+   */
+  private SearchSessionStore searchSessionStore(){
+    return new SearchSessionStore(new SearchSessionStore.EvictionListener(){
+      @Override
+      public void evicted(SearchSession session){
+        _passengerSessions.remove(session.getPassengerID(), session);
+        if(_lastSearch == session)
+          _lastSearch = null;
+      }
+    });
   }
 
   /** Gets the number of passengers registered into the service
@@ -78,7 +254,38 @@ public class TrainCompany implements Serializable {
     return _passengerID;
   }
 
-  /** Imports a file with passengers, services and registers them with registerFromFields
+  /** Sets the number of passengers registered, used as the ID of the next passenger
+   * @param numberOfPassengers
+   */
+  public void setNumberOfPassengers(int numberOfPassengers){
+    _passengerID = numberOfPassengers;
+  }
+
+  public long getJournalGeneration(){
+    return _journalGeneration;
+  }
+
+  public void setJournalGeneration(long journalGeneration){
+    _journalGeneration = journalGeneration;
+  }
+
+  /** Sets the journal which records every change from now on
+   * @param journal (null to stop recording)
+   */
+  public void setJournal(Journal journal){
+    _journal = journal;
+  }
+
+  /** Adds a passenger restored from a saved file, keeping its ID
+   * @param passenger
+   */
+  public void restorePassenger(Passenger passenger){
+    _passengers.put(passenger.getID(), passenger);
+    if(_passengerDirectory != null)
+      _passengerDirectory.addPassenger(passenger);
+  }
+
+  /** Imports a file with passengers, services and itineraries, parsing it in parallel with a FileImporter
   * @param filename
   * @throws exception ImportFileException on error on importing file
   * @throws exception IOException on error on reading the file
@@ -86,12 +293,7 @@ public class TrainCompany implements Serializable {
   */
   public void importFile(String filename) throws ImportFileException{
     try{
-    BufferedReader reader = new BufferedReader(new FileReader(filename));
-    String line;
-    while((line = reader.readLine()) != null){
-      String[] fields = line.split("\\|");
-      registerFromFields(fields);
-      }
+      new FileImporter(this).importFile(filename);
     }
       catch(IOException e){
         throw new ImportFileException();
@@ -105,9 +307,10 @@ public class TrainCompany implements Serializable {
    * @param fields
    * Fields is obtained from importFile
    * @throws NonUniquePassengerNameException if the name is already in use
+   * @throws ImportFileException if an itinerary doesn't match the passengers and services
    * @see mmt.exceptions.NonUniquePassengerNameException
    */
-  public void registerFromFields(String[] fields) throws NonUniquePassengerNameException{
+  public void registerFromFields(String[] fields) throws NonUniquePassengerNameException, ImportFileException{
     if(fields[0].equals("PASSENGER")){
       registerPassenger(fields[1]);
     }
@@ -119,16 +322,14 @@ public class TrainCompany implements Serializable {
     }
   }
 
-  /** Searchs the Passenger treemap for a passenger with a certain name
+  /** Searchs the passenger directory for a passenger with a certain name
    * @param name
    * @throws exception NonUniquePassengerNameException if the name is already in use
    * @see mmt.exceptions.NonUniquePassengerNameException
    */
   public void searchTreeMapPassenger(String name) throws NonUniquePassengerNameException{
-    for(Passenger passenger : _passengers.values()){
-      if(name.equals(passenger.getName())){
-        throw new NonUniquePassengerNameException(name);
-      }
+    if(passengerDirectory().containsName(name)){
+      throw new NonUniquePassengerNameException(name);
     }
   }
 
@@ -160,9 +361,23 @@ public class TrainCompany implements Serializable {
    * @see mmt.exceptions.NonUniquePassengerNameException
    */
   public void registerPassenger(String name) throws NonUniquePassengerNameException{
-    searchTreeMapPassenger(name);
-    Passenger passenger = new Passenger(_passengerID++, name);
-    _passengers.put(passenger.getID(), passenger);
+    PassengerDirectory passengerDirectory = passengerDirectory();
+    Lock lock = _changes.readLock();
+    lock.lock();
+    try{
+      synchronized(passengerDirectory){
+        searchTreeMapPassenger(name);
+        Passenger passenger = new Passenger(PASSENGER_ID.getAndIncrement(this), name);
+        _passengers.put(passenger.getID(), passenger);
+        passengerDirectory.addPassenger(passenger);
+        Journal journal = _journal;
+        if(journal != null)
+          journal.passengerRegistered(name);
+      }
+    }
+    finally{
+      lock.unlock();
+    }
   }
 
   /** Registers all the services into the TreeMap
@@ -172,13 +387,43 @@ public class TrainCompany implements Serializable {
   public void registerService(String[] services){
     int serviceID = Integer.parseInt(services[1]);
     double price = Double.parseDouble(services[2]);
-    Service service = new Service(serviceID, price);
-    for(int i = 3; i<services.length; i+=2){
-      LocalTime time = LocalTime.parse(services[i]);
-      Departure departure = new Departure(time, services[i+1]);
-      service.addDeparture(departure);
+    String[] stations = new String[(services.length - 3) / 2];
+    int[] minutes = new int[stations.length];
+    for(int i = 0; i<stations.length; i++){
+      minutes[i] = LocalTime.parse(services[3 + 2*i]).toSecondOfDay() / 60;
+      stations[i] = services[4 + 2*i];
+    }
+    registerService(serviceID, price, stations, minutes);
+  }
+
+  /** Registers a service into the TreeMap, replacing any service with the same ID
+   * @param serviceID
+   * @param price
+   * @param stations (station of each departure)
+   * @param minutes (time of each departure, in minutes since midnight)
+   */
+  public void registerService(int serviceID, double price, String[] stations, int[] minutes){
+    Lock lock = _changes.readLock();
+    lock.lock();
+    try{
+      synchronized(this){
+        Service service = new Service(serviceID, price, _stations);
+        for(int i = 0; i<stations.length; i++){
+          service.addDeparture(_stations.register(stations[i]), minutes[i]);
+        }
+        service.trimToSize();
+        _services.put(serviceID, service);
+        _stationIndex = null;
+        _connectionScan = null;
+        _searchCache.invalidate();
+        Journal journal = _journal;
+        if(journal != null)
+          journal.serviceRegistered(service);
+      }
+    }
+    finally{
+      lock.unlock();
     }
-    _services.put(serviceID, service);
   }
 
   /** Changes the passenger's ID name to a new one given by the user
@@ -191,9 +436,24 @@ public class TrainCompany implements Serializable {
    */
   public void changePassengerName(int passengerID, String name) throws NonUniquePassengerNameException, NoSuchPassengerIdException{
     checksIDTreeMap(passengerID);
-    searchTreeMapPassenger(name);
-    Passenger passenger = _passengers.get(passengerID);
-    passenger.setName(name);
+    PassengerDirectory passengerDirectory = passengerDirectory();
+    Lock lock = _changes.readLock();
+    lock.lock();
+    try{
+      synchronized(passengerDirectory){
+        searchTreeMapPassenger(name);
+        Passenger passenger = _passengers.get(passengerID);
+        String oldName = passenger.getName();
+        passenger.setName(name);
+        passengerDirectory.renamePassenger(passenger, oldName);
+        Journal journal = _journal;
+        if(journal != null)
+          journal.passengerRenamed(passengerID, name);
+      }
+    }
+    finally{
+      lock.unlock();
+    }
   }
 
   /** Prints a passenger if the ID inserted by the user exists
@@ -227,6 +487,14 @@ public class TrainCompany implements Serializable {
     return Collections.unmodifiableCollection(_passengers.values());
   }
 
+  /** Finds the passengers whose name starts with a prefix
+   * @param prefix
+   * @return Collection of Passengers sorted by name
+   */
+  public Collection<Passenger> findPassengersByNamePrefix(String prefix){
+    return passengerDirectory().findByPrefix(prefix);
+  }
+
   /** Prints all registered Services
    * @return Collection of Services
    */
@@ -243,20 +511,12 @@ public class TrainCompany implements Serializable {
    * as the departure station
    */
   public List<Service> checksDepartureStation(String stationName) throws NoSuchStationNameException{
+    checksServicesForStation(stationName);
     List<Service> services = new ArrayList<Service>();
-    String stationExists = "";
-    for(Service service : _services.values()){
-      for(Departure departure: service.getDepartures()){
-        if(stationName.equals(departure.getStation())){
-          stationExists = stationName;
-        }
+    for(StationStop stop : stationIndex().getStops(_stations.getID(stationName))){
+      if(stop.isFirstStop()){
+        services.add(stop.getService());
       }
-      if(stationName.equals(service.getDepartureStation().getStation())){
-        services.add(service);
-      }
-    }
-    if(stationExists.equals("")){
-      throw new NoSuchStationNameException(stationName);
     }
     return services;
   }
@@ -283,21 +543,13 @@ public class TrainCompany implements Serializable {
    * as the arrival station
    */
   public List<Service> checksArrivalStation(String stationName) throws NoSuchStationNameException{
+    checksServicesForStation(stationName);
     List<Service> services = new ArrayList<Service>();
-    String stationExists = "";
-    for(Service service : _services.values()){
-      for(Departure departure: service.getDepartures()){
-        if(stationName.equals(departure.getStation())){
-          stationExists = stationName;
-        }
-      }
-      if(stationName.equals(service.getArrivalStation().getStation())){
-          services.add(service);
+    for(StationStop stop : stationIndex().getStops(_stations.getID(stationName))){
+      if(stop.isLastStop()){
+        services.add(stop.getService());
       }
     }
-    if(stationExists.equals("")){
-      throw new NoSuchStationNameException(stationName);
-    }
     return services;
   }
 
@@ -316,27 +568,94 @@ public class TrainCompany implements Serializable {
   /** Registers the itineraries found within the import file into each passenger
   * @param fields - corresponds to what each itinerary contains and turns it into an
   * an itinerary associated with the respective passenger ID
+  * @throws ImportFileException if the itinerary doesn't match the passengers and services
   */
-  public void registerItinerary(String[] fields){
-    Passenger passenger = _passengers.get(Integer.parseInt(fields[1]));
-    Itinerary itinerary = new Itinerary(LocalDate.parse(fields[2]));
-    for(int i=3; i<fields.length; i++){
-      String[] services = fields[i].split("\\/");
-      Service service = _services.get(Integer.parseInt(services[0]));
-      itinerary.addService(service);
-      List<Departure> departures = service.getDepartures();
-      for(Departure departure : departures){
-        if(services[1].equals(departure.getStation())){
-          itinerary.addDeparture(departure);
-        }
-        if(services[2].equals(departure.getStation())){
-          itinerary.addDeparture(departure);
-        }
+  public void registerItinerary(String[] fields) throws ImportFileException{
+    int legs = fields.length - 3;
+    int[] serviceIDs = new int[legs];
+    String[] departureStations = new String[legs];
+    String[] arrivalStations = new String[legs];
+    for(int i=0; i<legs; i++){
+      String[] services = FileImporter.split(fields[3 + i], '/');
+      serviceIDs[i] = Integer.parseInt(services[0]);
+      departureStations[i] = services[1];
+      arrivalStations[i] = services[2];
+    }
+    registerItinerary(Integer.parseInt(fields[1]), LocalDate.parse(fields[2]), serviceIDs, departureStations, arrivalStations);
+  }
+
+  /** Registers an itinerary into a passenger, finding its departures through the stop lookup of each service.
+  * @param passengerID
+  * @param date
+  * @param serviceIDs (service of each leg)
+  * @param departureStations (station where each leg starts)
+  * @param arrivalStations (station where each leg ends)
+  * @throws ImportFileException if the passenger or a service doesn't exist,
+  * or a service doesn't call at the station where its leg starts or ends
+  */
+  public void registerItinerary(int passengerID, LocalDate date, int[] serviceIDs, String[] departureStations, String[] arrivalStations)
+      throws ImportFileException{
+    Passenger passenger = importedPassenger(passengerID);
+    addItinerary(passenger, importedItinerary(date, serviceIDs, departureStations, arrivalStations));
+  }
+
+  /** Finds the passenger of an imported itinerary
+  * @param passengerID
+  * @return Passenger
+  * @throws ImportFileException if the passenger doesn't exist
+  */
+  Passenger importedPassenger(int passengerID) throws ImportFileException{
+    Passenger passenger = _passengers.get(passengerID);
+    if(passenger == null)
+      throw new ImportFileException();
+    return passenger;
+  }
+
+  /** Builds an imported itinerary on the services registered now, so a service registered
+  * later with the same ID doesn't change it
+  * @param date
+  * @param serviceIDs (service of each leg)
+  * @param departureStations (station where each leg starts)
+  * @param arrivalStations (station where each leg ends)
+  * @return Itinerary
+  * @throws ImportFileException if a service doesn't exist,
+  * or doesn't call at the station where its leg starts or ends
+  */
+  Itinerary importedItinerary(LocalDate date, int[] serviceIDs, String[] departureStations, String[] arrivalStations)
+      throws ImportFileException{
+    Itinerary itinerary = new Itinerary(date);
+    for(int i=0; i<serviceIDs.length; i++){
+      Service service = _services.get(serviceIDs[i]);
+      if(service == null)
+        throw new ImportFileException();
+      int departurePosition = service.getPosition(_stations.getID(departureStations[i]));
+      int arrivalPosition = service.getPosition(_stations.getID(arrivalStations[i]));
+      if(departurePosition < 0 || arrivalPosition < 0)
+        throw new ImportFileException();
+      itinerary.addLeg(service, departurePosition, arrivalPosition);
+    }
+    return itinerary;
+  }
+
+  /** Adds an itinerary to a passenger, holding only the lock of that passenger.
+   * Itineraries of different passengers can be added concurrently.
+   * @param passenger
+   * @param itinerary
+   */
+  void addItinerary(Passenger passenger, Itinerary itinerary){
+    Lock lock = _changes.readLock();
+    lock.lock();
+    try{
+      synchronized(passenger){
+        passenger.addItinerary(itinerary);
+        Journal journal = _journal;
+        if(journal != null)
+          journal.itineraryAdded(passenger.getID(), itinerary);
       }
     }
-    itinerary.setItineraryPrice();
-    itinerary.setDuration();
-    passenger.addItinerary(itinerary);
+    finally{
+      lock.unlock();
+    }
   }
 
   /** Shows each itinerary associated with a certain passengerID
@@ -346,23 +665,28 @@ public class TrainCompany implements Serializable {
   * @return String with all the associated itineraries for the passengerID
   */
   public String showItinerarybyPassenger(int passengerID) throws NoSuchPassengerIdException{
-    String printItinerary = "";
-    checksIDTreeMap(passengerID);
-    Passenger passenger = _passengers.get(passengerID);
-    if(passenger.getNumberOfItineraries() == 0){
-      return printItinerary;
+    StringBuilder printItinerary = new StringBuilder();
+    try{
+      showItinerarybyPassenger(passengerID, printItinerary, 0, Integer.MAX_VALUE);
     }
-    else{
-      printItinerary += passenger.stringItinerary() + "\n";
-      List<Itinerary> itineraries = new ArrayList<Itinerary>();
-      itineraries = passenger.getItineraries();
-      Collections.sort(itineraries);
-      for(Itinerary itinerary : itineraries){
-        printItinerary += passenger.stringToItinerary(itinerary) + "\n";
-        printItinerary += itinerary.toString() + "\n";
-      }
-      return printItinerary;
+    catch(IOException e){
+      throw new UncheckedIOException(e);
     }
+    return printItinerary.toString();
+  }
+
+  /** Writes a page of the itineraries associated with a certain passengerID
+  * @param passengerID
+  * @param out
+  * @param offset (number of itineraries to skip)
+  * @param limit (maximum number of itineraries to write)
+  * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
+  * @throws exception IOException on error on writing
+  * @see mmt.exceptions.NoSuchPassengerIdException
+  */
+  public void showItinerarybyPassenger(int passengerID, Appendable out, int offset, int limit) throws NoSuchPassengerIdException, IOException{
+    checksIDTreeMap(passengerID);
+    appendItineraries(_passengers.get(passengerID), out, offset, limit);
   }
 
   /** Shows all itineraries associated with every passenger registered to the TrainCompany
@@ -370,19 +694,51 @@ public class TrainCompany implements Serializable {
   * the TrainCompany, if the passenger has itineraries
   */
   public String showAllItineraries(){
-    String printItinerary = "";
+    StringBuilder printItinerary = new StringBuilder();
+    try{
+      showAllItineraries(printItinerary, 0, Integer.MAX_VALUE);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    return printItinerary.toString();
+  }
+
+  /** Writes a page of the itineraries of every passenger registered to the TrainCompany,
+  * skipping the passengers without itineraries in that page
+  * @param out
+  * @param offset (number of itineraries of each passenger to skip)
+  * @param limit (maximum number of itineraries of each passenger to write)
+  * @throws exception IOException on error on writing
+  */
+  public void showAllItineraries(Appendable out, int offset, int limit) throws IOException{
     for(Passenger passenger : _passengers.values()){
-      if(passenger.getNumberOfItineraries() != 0){
-        printItinerary += passenger.stringItinerary() + "\n";
-        List<Itinerary> itineraries = passenger.getItineraries();
-        Collections.sort(itineraries);
-        for(Itinerary itinerary : itineraries){
-          printItinerary += passenger.stringToItinerary(itinerary) + "\n";
-          printItinerary += itinerary.toString() + "\n";
-        }
+      appendItineraries(passenger, out, offset, limit);
+    }
+  }
+
+  /** Writes a page of the itineraries of a passenger, which are kept sorted by date, after the passenger's header
+  * @param passenger
+  * @param out
+  * @param offset
+  * @param limit
+  * @throws exception IOException on error on writing
+  */
+  private void appendItineraries(Passenger passenger, Appendable out, int offset, int limit) throws IOException{
+    synchronized(passenger){
+      List<Itinerary> itineraries = passenger.getItinerariesByDate();
+      int first = Math.max(offset, 0);
+      int end = (int) Math.min((long) first + limit, itineraries.size());
+      if(first >= end)
+        return;
+      out.append(passenger.stringItinerary()).append('\n');
+      for(int i = first; i < end; i++){
+        Itinerary itinerary = itineraries.get(i);
+        out.append(passenger.stringToItinerary(i + 1, itinerary)).append('\n');
+        itinerary.appendTo(out);
+        out.append('\n');
       }
     }
-    return printItinerary;
   }
 
   /** Checks if a certain station exists within the TrainCompany Services
@@ -392,17 +748,9 @@ public class TrainCompany implements Serializable {
   * @see mmt.exceptions.NoSuchStationNameException
   */
   public void checksServicesForStation(String station) throws NoSuchStationNameException{
-    String stationName = "";
-    for(Service service : _services.values()){
-      for(Departure departure : service.getDepartures()){
-        if(departure.getStation().equals(station)){
-          stationName = station;
-        }
-      }
-    }
-    if(stationName.equals(""))
-     throw new NoSuchStationNameException(station);
-    }
+    if(!stationIndex().containsStation(_stations.getID(station)))
+      throw new NoSuchStationNameException(station);
+  }
 
   /** This function does two things within the code: for a start,
   * it calculates the services for which
@@ -415,85 +763,66 @@ public class TrainCompany implements Serializable {
   */
   public List<Service> checksServicesForCurrentStation(String currentStation, LocalTime departureTime){
     List<Service> services = new ArrayList<Service>();
-    for(Service service : _services.values()){
-      for(Departure departure : service.getDepartures()){
-        if(!(service.getDeparture(service.getDepartures().size()-1).getStation().equals(currentStation))){
-          if(departure.getStation().equals(currentStation) && departure.getDepartureTime().isAfter(departureTime)){
-            services.add(service);
-          }
+    int station = _stations.getID(currentStation);
+    int minutes = departureTime.toSecondOfDay() / 60;
+    for(StationStop stop : stationIndex().getStops(station)){
+      Service service = stop.getService();
+      if(!service.checksFinalStation(station)){
+        if(stop.getMinutes() > minutes){
+          services.add(service);
         }
       }
     }
     return services;
   }
 
-  /** From the recursion, when we hit a service that is direct to the
-  * arrivalStation, builds the itineraries for the services who are associated
-  * with the itineraries
-  * @param services (list with the services associated with the itinerary)
-  * @param currentStation
+  /** Function which handles all of the things associated with the search algorythm.
+  * The options are kept in a session of the passenger, replacing those of the passenger's
+  * previous search, until commitItinerary(passengerId, itineraryId) commits one of them.
+  * @param passengerId
+  * @param departureStation
   * @param arrivalStation
-  * @param date
-  * @param time
-  * @return itineraries (list with all the possible itineraries)
+  * @param departureDate
+  * @param departureTime
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with the station desired by the user
+  * @see mmt.exceptions.NoSuchStationNameException
+  * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
+  * @see mmt.exceptions.NoSuchPassengerIdException
+  * @return Collection of the itineraries not dominated in time of arrival, price and number of
+  * transfers, sorted by time of departure, time of arrival and price
   */
-  public List<Itinerary> buildsItinerary(List<Service> services, String departureStation, String arrivalStation, LocalDate date, LocalTime time){
-    List<Itinerary> itineraries = new ArrayList<Itinerary>();
-    int j = 0;
-    for(Service service : services){
-      for(int i = 0; i<service.getNumberOfDepartures(); i++){
-        Departure departure = service.getDeparture(i);
-        if(departure.getStation().equals(departureStation) && service.getIndexDeparture(departureStation)<service.getIndexDeparture(arrivalStation)){
-          j = i;
-        }
-        if(departure.getStation().equals(arrivalStation)){
-          Itinerary itinerary = new Itinerary(date);
-          itinerary.addService(service);
-          itinerary.addDeparture(service.getDeparture(j));
-          itinerary.addDeparture(departure);
-          itinerary.setItineraryPrice();
-          itinerary.setDuration();
-          if(!itineraries.contains(itinerary))
-            itineraries.add(itinerary);
-        }
-      }
-    }
-    return itineraries;
-  }
+  public Collection<Itinerary> search(int passengerId, String departureStation, String arrivalStation, String departureDate,
+   String departureTime) throws NoSuchStationNameException, NoSuchPassengerIdException{
+     return search(passengerId, departureStation, arrivalStation, departureDate, departureTime, null);
+   }
 
-  /** Recursive function associated with the search algorithm for the itineraries
-  * The recursive function has two cases: if the current service has a direct route
-  * to the arrivalStation or if the current service doesn't have one direct route
-  * @param services (list with the services associated with the currentStation)
-  * @param servicesItinerary (list with the services for which the itinerary goes through)
+  /** Searches like search, recording what the search did in statistics
+  * @param passengerId
   * @param departureStation
-  * @param currentStation
   * @param arrivalStation
-  * @param date
-  * @param time
-  * @return List of itineraries possible from the services within the TrainCompany
+  * @param departureDate
+  * @param departureTime
+  * @param statistics (filled by the search, or null)
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with the station desired by the user
+  * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
+  * @return Collection of itineraries, as in search
   */
-  public List<Itinerary> searchRecursive(List<Service> services, List<Service> servicesItinerary, String departureStation, String currentStation, String arrivalStation, LocalDate date, LocalTime time){
-    List<Itinerary> itineraries = new ArrayList<Itinerary>();
-    List<Service> servicesAux = new ArrayList<Service>();
-    for(Service service : services){
-      if(service.containsDeparture(arrivalStation) && service.getIndexDeparture(departureStation)<service.getIndexDeparture(arrivalStation)){
-        servicesItinerary.add(service);
-        itineraries = buildsItinerary(servicesItinerary, departureStation, arrivalStation, date, time);
-      }
-      else{
-        if(service.getNextStation(currentStation)!=null){
-            servicesAux = checksServicesForCurrentStation(service.getNextStation(currentStation), service.getTime(currentStation));
-            if(!(servicesItinerary.contains(service)))
-              servicesItinerary.add(service);
-            searchRecursive(servicesAux, servicesItinerary, currentStation, service.getNextStation(currentStation), arrivalStation, date, service.getTime(currentStation));
-        }
-      }
-    }
-    return itineraries;
-  }
+  public Collection<Itinerary> search(int passengerId, String departureStation, String arrivalStation, String departureDate,
+   String departureTime, SearchStatistics statistics) throws NoSuchStationNameException, NoSuchPassengerIdException{
+     List<Itinerary> itineraryOptions = findItineraries(passengerId, departureStation, arrivalStation, departureDate,
+       departureTime, statistics);
+     SearchSession session = _searchSessions.open(passengerId, itineraryOptions);
+     SearchSession previous = _passengerSessions.put(passengerId, session);
+     if(previous != null)
+       _searchSessions.close(previous);
+     _lastSearch = session;
+     return session.getOptions();
+   }
 
-  /** Function which handles all of the things associated with the search algorythm
+  /** Searches like search, but keeps the options in a session of their own instead of
+  * in the train company, so that searches of different clients don't interfere
   * @param passengerId
   * @param departureStation
   * @param arrivalStation
@@ -501,66 +830,222 @@ public class TrainCompany implements Serializable {
   * @param departureTime
   * @throws exception NoSuchStationNameException if there isn't any service
   * with the station desired by the user
-  * @see mmt.exceptions.NoSuchStationNameException
   * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
-  * @see mmt.exceptions.NoSuchPassengerIdException
-  * @return Collection of itineraries sorted by price, time of arrival and time of DepartureComparator
+  * @return SearchSession with the options, to be committed with commitItinerary
   */
-  public Collection<Itinerary> search(int passengerId, String departureStation, String arrivalStation, String departureDate,
+  public SearchSession searchSession(int passengerId, String departureStation, String arrivalStation, String departureDate,
    String departureTime) throws NoSuchStationNameException, NoSuchPassengerIdException{
-       LocalDate date = LocalDate.parse(departureDate);
-       LocalTime time = LocalTime.parse(departureTime);
-       checksIDTreeMap(passengerId);
-       checksServicesForStation(departureStation);
-       checksServicesForStation(arrivalStation);
-       List<Service> services = checksServicesForCurrentStation(departureStation,time);
-       List<Service> servicesItinerary = new ArrayList<Service>();
-       String currentStation = departureStation;
-       List<Itinerary> itineraries = searchRecursive(services, servicesItinerary, departureStation, currentStation ,arrivalStation, date, time);
-       _itineraryOptions = itineraries;
-       Collections.sort(itineraries, new ItineraryPriceComparator());
-       Collections.sort(itineraries, new ItineraryArrivalComparator());
-       Collections.sort(itineraries, new ItineraryStartComparator());
-     return Collections.unmodifiableCollection(_itineraryOptions);
+     return searchSession(passengerId, departureStation, arrivalStation, departureDate, departureTime, null);
+   }
+
+  /** Searches like searchSession, recording what the search did in statistics
+  * @param passengerId
+  * @param departureStation
+  * @param arrivalStation
+  * @param departureDate
+  * @param departureTime
+  * @param statistics (filled by the search, or null)
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with the station desired by the user
+  * @throws exception NoSuchPassengerIdException if the passengerID doesn't exist
+  * @return SearchSession with the options, to be committed with commitItinerary
+  */
+  public SearchSession searchSession(int passengerId, String departureStation, String arrivalStation, String departureDate,
+   String departureTime, SearchStatistics statistics) throws NoSuchStationNameException, NoSuchPassengerIdException{
+     List<Itinerary> itineraryOptions = findItineraries(passengerId, departureStation, arrivalStation, departureDate,
+       departureTime, statistics);
+     return _searchSessions.open(passengerId, itineraryOptions);
+   }
+
+  private List<Itinerary> findItineraries(int passengerId, String departureStation, String arrivalStation, String departureDate,
+   String departureTime, SearchStatistics statistics) throws NoSuchStationNameException, NoSuchPassengerIdException{
+     long start = System.nanoTime();
+     LocalDate date = LocalDate.parse(departureDate);
+     LocalTime time = LocalTime.parse(departureTime);
+     checksIDTreeMap(passengerId);
+     checksServicesForStation(departureStation);
+     checksServicesForStation(arrivalStation);
+     long validated = System.nanoTime();
+     long generation = _searchCache.getGeneration();
+     StationIndex stationIndex = stationIndex();
+     long indexed = System.nanoTime();
+     int origin = _stations.getID(departureStation);
+     int target = _stations.getID(arrivalStation);
+     int bucket = stationIndex.lastDepartureUntil(origin, time.toSecondOfDay() / 60);
+     List<Itinerary> itineraries = _searchCache.get(origin, target, date, bucket);
+     boolean cacheHit = itineraries != null;
+     if(!cacheHit){
+       RaptorSearch raptor = new RaptorSearch(stationIndex, _stations, RaptorSearch.DEFAULT_MAX_TRIPS);
+       itineraries = raptor.search(departureStation, arrivalStation, date, time, statistics, _searchPool);
+       _searchCache.put(origin, target, date, bucket, itineraries, generation);
+     }
+     if(statistics != null){
+       if(cacheHit)
+         statistics.clearWork();
+       statistics.setQuery(departureStation, arrivalStation, date, time);
+       statistics.setCacheHit(cacheHit);
+       statistics.setItineraries(itineraries.size());
+       statistics.setValidationNanos(validated - start);
+       statistics.setIndexNanos(indexed - validated);
+       statistics.setTotalNanos(System.nanoTime() - start);
+     }
+     return itineraries;
+   }
+
+  /** Returns the cache of the search results, with its hit and miss counters
+   * @return SearchCache
+   */
+  public SearchCache getSearchCache(){
+    return _searchCache;
+  }
+
+  /** Finds, for the rest of the day, the earliest arrival for each later departure
+  * from the departureStation to the arrivalStation
+  * @param departureStation
+  * @param arrivalStation
+  * @param departureDate
+  * @param departureTime
+  * @throws exception NoSuchStationNameException if there isn't any service
+  * with the station desired by the user
+  * @see mmt.exceptions.NoSuchStationNameException
+  * @return Collection of itineraries sorted by time of departure
+  */
+  public Collection<Itinerary> searchEarliestArrivals(String departureStation, String arrivalStation, String departureDate,
+   String departureTime) throws NoSuchStationNameException{
+     LocalDate date = LocalDate.parse(departureDate);
+     LocalTime time = LocalTime.parse(departureTime);
+     checksServicesForStation(departureStation);
+     checksServicesForStation(arrivalStation);
+     return Collections.unmodifiableCollection(connectionScan().search(departureStation, arrivalStation, date, time));
+   }
+
+   /** Finds the earliest arrival from the departureStation at each of the arrivalStations
+   * with a single search, instead of one search for each of them
+   * @param departureStation
+   * @param arrivalStations
+   * @param departureDate
+   * @param departureTime
+   * @throws exception NoSuchStationNameException if there isn't any service
+   * with one of the stations desired by the user
+   * @see mmt.exceptions.NoSuchStationNameException
+   * @return ArrivalTable with a row for each arrival station, in the same order
+   */
+   public ArrivalTable searchArrivals(String departureStation, String[] arrivalStations, String departureDate,
+    String departureTime) throws NoSuchStationNameException{
+     return searchArrivals(new String[]{ departureStation }, arrivalStations, departureDate, departureTime).get(0);
    }
 
-   /** Function which returns the index of the itinerary within the List
-   * @param Itinerary
-   * @return int (index of the itinerary)
+   /** Finds the earliest arrival from each of the departureStations at each of the arrivalStations,
+   * with a single search for each departure station, run in the search pool if there is one
+   * @param departureStations
+   * @param arrivalStations
+   * @param departureDate
+   * @param departureTime
+   * @throws exception NoSuchStationNameException if there isn't any service
+   * with one of the stations desired by the user
+   * @see mmt.exceptions.NoSuchStationNameException
+   * @return List with an ArrivalTable for each departure station, in the same order
    */
+   public List<ArrivalTable> searchArrivals(String[] departureStations, String[] arrivalStations, String departureDate,
+    String departureTime) throws NoSuchStationNameException{
+     LocalDate date = LocalDate.parse(departureDate);
+     LocalTime time = LocalTime.parse(departureTime);
+     for(String station : departureStations){
+       checksServicesForStation(station);
+     }
+     for(String station : arrivalStations){
+       checksServicesForStation(station);
+     }
+     return Collections.unmodifiableList(connectionScan().earliestArrivals(departureStations, arrivalStations, date, time,
+       _searchPool));
+   }
+
+   /** Number of an itinerary among the options of the last search of a passenger
+   * @param passengerId
+   * @param itinerary (option returned by search)
+   * @return int (number of the option, from 1, or 0 if it isn't an option of the passenger waiting to be committed)
+   */
+   public int getItineraryIndex(int passengerId, Itinerary itinerary){
+     SearchSession session = _passengerSessions.get(passengerId);
+     return session == null ? 0 : session.getOptionNumber(itinerary);
+   }
+
+   /** Number of an itinerary among the options of the last search of its passenger
+   * @param itinerary (option returned by search)
+   * @return int (number of the option, from 1, or 0 if it isn't an option waiting to be committed)
+   * @deprecated looks through the searches of every passenger; use getItineraryIndex(int, Itinerary)
+   * or the getOptionNumber of a SearchSession
+   */
+   @Deprecated
    public int getItineraryIndex(Itinerary itinerary){
-     return _itineraryOptions.indexOf(itinerary)+1;
+     for(SearchSession session : _passengerSessions.values()){
+       int number = session.getOptionNumber(itinerary);
+       if(number > 0)
+         return number;
+     }
+     return 0;
+   }
+
+   /** Checks if the last search of a passenger found no itinerary options
+   * @param passengerId
+   * @return boolean true if there are no options to commit for the passenger
+   */
+   public boolean checksItineraries(int passengerId){
+     SearchSession session = _passengerSessions.get(passengerId);
+     return session == null || !session.hasOptions();
    }
 
    /** Function which checks if the itinerary options are empty
    * @return boolean
    * true if the itinerary options are empty
    * false if it isn't
+   * @deprecated answers for the last search of any passenger; use checksItineraries(int)
+   * or the options of a SearchSession
    */
+   @Deprecated
    public boolean checksItineraries(){
-     return _itineraryOptions.isEmpty();
+     SearchSession session = _lastSearch;
+     return session == null || !session.hasOptions();
    }
 
-   /** Functions which inserts the itinerary into the passenger
+   /** Commits one of the options of the last search of a passenger made with search,
+   * so searches of other passengers in between don't change the options.
+   * Choosing 0 discards the options without committing anything.
    * @param passengerId
-   * @param itineraryId
+   * @param itineraryId (number of the option, from 1)
    * @throws exception NoSuchItineraryChoiceException if the number inserted doesn't
-   * belong to any of the itinerary choices
+   * belong to any of the itinerary choices of the passenger
    * @see mmt.exceptions.NoSuchItineraryChoiceException
    */
    public void commitItinerary(int passengerId, int itineraryId) throws NoSuchItineraryChoiceException{
+     SearchSession session = _passengerSessions.remove(passengerId);
+     if(session == null){
+       if(itineraryId == 0)
+         return;
+       throw new NoSuchItineraryChoiceException(passengerId, itineraryId);
+     }
+     commitItinerary(session, itineraryId);
+   }
+
+   /** Commits one of the options of a search session into its passenger, closing the session.
+   * Choosing 0 closes the session without committing anything.
+   * @param session
+   * @param itineraryId (number of the option, from 1)
+   * @throws exception NoSuchItineraryChoiceException if the number inserted doesn't
+   * belong to any of the itinerary choices, or if the session expired
+   * @see mmt.exceptions.NoSuchItineraryChoiceException
+   */
+   public void commitItinerary(SearchSession session, int itineraryId) throws NoSuchItineraryChoiceException{
+     boolean open = _searchSessions.close(session);
+     _passengerSessions.remove(session.getPassengerID(), session);
      if(itineraryId==0){
-       _itineraryOptions.clear();
        return;
      }
-     if(itineraryId<0 || itineraryId>_itineraryOptions.size()){
-      _itineraryOptions.clear();
-      throw new NoSuchItineraryChoiceException(passengerId, itineraryId);
+     Itinerary itinerary = open ? session.getOption(itineraryId) : null;
+     if(itinerary == null){
+       throw new NoSuchItineraryChoiceException(session.getPassengerID(), itineraryId);
      }
-     Passenger passenger = _passengers.get(passengerId);
-     Itinerary itinerary = _itineraryOptions.get(itineraryId-1);
-     passenger.addItinerary(itinerary);
-     _itineraryOptions.clear();
+     addItinerary(_passengers.get(session.getPassengerID()), itinerary);
    }
 
 }
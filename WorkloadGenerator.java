@@ -0,0 +1,260 @@
+package mmt;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generates import files with a synthetic network and passengers, to load test
+ * the import, the search, the persistence and the reports at scale.
+ * The same parameters and seed always generate the same file.
+ *
+ * Without hubs, each service stops at random stations. With hubs, the stations
+ * are split in regions around the first stations, the hubs: most services stop
+ * at the hub and at stations of one region, and every fifth service is a trunk
+ * service linking hubs, so journeys between regions change at the hubs.
+ */
+public class WorkloadGenerator {
+
+  /** First day of the itineraries */
+  public static final LocalDate FIRST_DAY = LocalDate.of(2017, 1, 1);
+
+  /** Number of days with itineraries */
+  public static final int DAYS = 365;
+
+  /** One in this many services links hubs */
+  private static final int TRUNK_SERVICES = 5;
+
+  /** Earliest and latest first departure of a service, in minutes since midnight */
+  private static final int FIRST_DEPARTURE = 5*60;
+  private static final int LAST_DEPARTURE = 20*60;
+
+  /** Longest time between two stops of a service, in minutes */
+  private static final int MAXIMUM_STEP = 40;
+
+  /** Most stops of a service, a minute apart, that still end by 23:59 when the
+   * service leaves at the latest first departure */
+  public static final int MAXIMUM_STOPS_PER_SERVICE = 24*60 - LAST_DEPARTURE + 1;
+
+  private int _stations = 100;
+  private int _services = 1000;
+  private int _stopsPerService = 8;
+  private int _hubs = 0;
+  private int _passengers = 1000;
+  private int _itinerariesPerPassenger = 5;
+  private long _seed;
+
+  /** Stations of each service, filled while the services are written */
+  private int[][] _serviceStops;
+
+  /** WorkloadGenerator Construtor
+   * @param seed
+   */
+  public WorkloadGenerator(long seed){
+    _seed = seed;
+  }
+
+  public void setStations(int stations){
+    _stations = stations;
+  }
+
+  public void setServices(int services){
+    _services = services;
+  }
+
+  /** Sets the number of stops of each service
+   * @param stopsPerService (at most MAXIMUM_STOPS_PER_SERVICE)
+   */
+  public void setStopsPerService(int stopsPerService){
+    _stopsPerService = stopsPerService;
+  }
+
+  /** Sets the number of hubs
+   * @param hubs (0 for services stopping at random stations)
+   */
+  public void setHubs(int hubs){
+    _hubs = hubs;
+  }
+
+  public void setPassengers(int passengers){
+    _passengers = passengers;
+  }
+
+  public void setItinerariesPerPassenger(int itinerariesPerPassenger){
+    _itinerariesPerPassenger = itinerariesPerPassenger;
+  }
+
+  /** Name of a generated station
+   * @param station (from 0)
+   * @return String
+   */
+  public static String stationName(int station){
+    return "St" + station;
+  }
+
+  /** Name of a generated passenger
+   * @param passenger (from 0, as is its identifier once imported)
+   * @return String
+   */
+  public static String passengerName(int passenger){
+    return "P" + passenger;
+  }
+
+  /** Writes an import file
+   * @param filename
+   * @throws IOException on error on writing the file
+   */
+  public void write(String filename) throws IOException{
+    try(BufferedWriter out = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8)){
+      write(out);
+    }
+  }
+
+  /** Writes the lines of an import file: the passengers, then the services, then the itineraries
+   * @param out
+   * @throws IOException on error on writing
+   * @throws IllegalArgumentException if the parameters can't make a network
+   */
+  public void write(Writer out) throws IOException{
+    if(_stations < 2 || _services < 1 || _stopsPerService < 2 || _stopsPerService > MAXIMUM_STOPS_PER_SERVICE
+      || _hubs < 0 || _hubs > _stations / 2)
+      throw new IllegalArgumentException("Can't generate " + _services + " services with " + _stopsPerService
+        + " stops among " + _stations + " stations and " + _hubs + " hubs");
+    Random random = new Random(_seed);
+    StringBuilder line = new StringBuilder();
+    for(int i = 0; i < _passengers; i++){
+      line.setLength(0);
+      line.append("PASSENGER|").append(passengerName(i)).append('\n');
+      out.append(line);
+    }
+    _serviceStops = new int[_services][];
+    int[] order = new int[_stations];
+    for(int i = 0; i < _services; i++){
+      _serviceStops[i] = chooseStops(i, random, order);
+      line.setLength(0);
+      appendService(line, i, _serviceStops[i], random);
+      out.append(line);
+    }
+    for(int i = 0; i < _passengers; i++){
+      for(int j = 0; j < _itinerariesPerPassenger; j++){
+        line.setLength(0);
+        appendItinerary(line, i, random);
+        out.append(line);
+      }
+    }
+    _serviceStops = null;
+  }
+
+  /** Chooses the stations of a service, without repeating any
+   * @param service
+   * @param random
+   * @param order (scratch array with one entry per station)
+   * @return int[] stations, in the order of the stops
+   */
+  private int[] chooseStops(int service, Random random, int[] order){
+    if(_hubs == 0)
+      return choose(0, _stations, 1, Math.min(_stopsPerService, _stations), random, order);
+    if(_hubs > 1 && service % TRUNK_SERVICES == 0)
+      return choose(0, _hubs, 1, Math.min(_stopsPerService, _hubs), random, order);
+    int hub = random.nextInt(_hubs);
+    int regionSize = (_stations - _hubs - hub + _hubs - 1) / _hubs;
+    int stops = Math.min(_stopsPerService, regionSize + 1);
+    int[] regional = choose(_hubs + hub, regionSize, _hubs, stops - 1, random, order);
+    int[] stations = new int[stops];
+    int hubPosition = random.nextInt(stops);
+    for(int i = 0, j = 0; i < stops; i++){
+      stations[i] = i == hubPosition ? hub : regional[j++];
+    }
+    return stations;
+  }
+
+  /** Chooses stations at random among first, first + step, first + 2*step, ...
+   * @param first
+   * @param count (number of stations to choose from)
+   * @param step
+   * @param chosen (number of stations to choose)
+   * @param random
+   * @param order (scratch array with at least count entries)
+   * @return int[] the chosen stations
+   */
+  private static int[] choose(int first, int count, int step, int chosen, Random random, int[] order){
+    for(int i = 0; i < count; i++){
+      order[i] = first + i*step;
+    }
+    int[] stations = new int[chosen];
+    for(int i = 0; i < chosen; i++){
+      int j = i + random.nextInt(count - i);
+      int station = order[j];
+      order[j] = order[i];
+      order[i] = station;
+      stations[i] = station;
+    }
+    return stations;
+  }
+
+  private static void appendService(StringBuilder line, int service, int[] stations, Random random){
+    int minutes = FIRST_DEPARTURE + random.nextInt(LAST_DEPARTURE - FIRST_DEPARTURE);
+    int step = Math.max(1, Math.min(MAXIMUM_STEP, (24*60 - 1 - minutes) / (stations.length - 1)));
+    line.append("SERVICE|").append(service).append('|').append(10 + random.nextInt(90));
+    for(int station : stations){
+      line.append('|').append((char) ('0' + minutes / 600)).append((char) ('0' + minutes / 60 % 10)).append(':')
+        .append((char) ('0' + minutes % 60 / 10)).append((char) ('0' + minutes % 10))
+        .append('|').append(stationName(station));
+      minutes += 1 + random.nextInt(step);
+    }
+    line.append('\n');
+  }
+
+  /** Appends an itinerary with one or two legs, the second one starting where the first one ends
+   * whenever another service stops there
+   */
+  private void appendItinerary(StringBuilder line, int passenger, Random random){
+    line.append("ITINERARY|").append(passenger).append('|').append(FIRST_DAY.plusDays(random.nextInt(DAYS)));
+    int service = random.nextInt(_services);
+    int[] stations = _serviceStops[service];
+    int departure = random.nextInt(stations.length - 1);
+    int arrival = departure + 1 + random.nextInt(stations.length - departure - 1);
+    appendLeg(line, service, departure, arrival);
+    if(random.nextBoolean()){
+      int nextService = random.nextInt(_services);
+      int[] next = _serviceStops[nextService];
+      for(int i = 0; i < next.length - 1; i++){
+        if(next[i] == stations[arrival]){
+          appendLeg(line, nextService, i, i + 1 + random.nextInt(next.length - i - 1));
+          break;
+        }
+      }
+    }
+    line.append('\n');
+  }
+
+  private void appendLeg(StringBuilder line, int service, int departure, int arrival){
+    line.append('|').append(service).append('/').append(stationName(_serviceStops[service][departure]))
+      .append('/').append(stationName(_serviceStops[service][arrival]));
+  }
+
+  /** Writes an import file with the parameters given on the command line:
+   * filename stations services stopsPerService hubs passengers itinerariesPerPassenger seed
+   * @param args
+   * @throws IOException on error on writing the file
+   */
+  public static void main(String[] args) throws IOException{
+    if(args.length != 8){
+      System.err.println("usage: WorkloadGenerator filename stations services stopsPerService hubs passengers itinerariesPerPassenger seed");
+      System.exit(2);
+    }
+    WorkloadGenerator generator = new WorkloadGenerator(Long.parseLong(args[7]));
+    generator.setStations(Integer.parseInt(args[1]));
+    generator.setServices(Integer.parseInt(args[2]));
+    generator.setStopsPerService(Integer.parseInt(args[3]));
+    generator.setHubs(Integer.parseInt(args[4]));
+    generator.setPassengers(Integer.parseInt(args[5]));
+    generator.setItinerariesPerPassenger(Integer.parseInt(args[6]));
+    generator.write(args[0]);
+  }
+}
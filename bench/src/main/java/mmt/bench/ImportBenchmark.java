@@ -0,0 +1,45 @@
+package mmt.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import mmt.TicketOffice;
+import mmt.exceptions.ImportFileException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of importing a whole file into an empty ticket office.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark extends NetworkState {
+
+  private File _importFile;
+
+  @Setup
+  public void setUp() throws IOException{
+    _importFile = writeImportFile();
+  }
+
+  @Benchmark
+  public TicketOffice importFile() throws ImportFileException{
+    TicketOffice office = new TicketOffice();
+    office.importFile(_importFile.getPath());
+    return office;
+  }
+}
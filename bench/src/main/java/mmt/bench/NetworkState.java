@@ -0,0 +1,54 @@
+package mmt.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import mmt.WorkloadGenerator;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Parameters of the network and of the passengers shared by every benchmark,
+ * and the import file generated from them. The same parameters always give the same file.
+ */
+public abstract class NetworkState {
+
+  @Param({"100", "1000"})
+  public int stations;
+
+  @Param({"1000", "10000"})
+  public int services;
+
+  @Param({"8"})
+  public int stopsPerService;
+
+  @Param({"0", "10"})
+  public int hubs;
+
+  @Param({"10000"})
+  public int passengers;
+
+  @Param({"5"})
+  public int itinerariesPerPassenger;
+
+  @Param({"20170101"})
+  public long seed;
+
+  /** Writes an import file with the passengers, services and itineraries of the parameters
+   * @return File (temporary, deleted when the JVM exits)
+   * @throws IOException on error on writing the file
+   */
+  File writeImportFile() throws IOException{
+    File file = File.createTempFile("mmt-bench", ".txt");
+    file.deleteOnExit();
+    WorkloadGenerator generator = new WorkloadGenerator(seed);
+    generator.setStations(stations);
+    generator.setServices(services);
+    generator.setStopsPerService(stopsPerService);
+    generator.setHubs(hubs);
+    generator.setPassengers(passengers);
+    generator.setItinerariesPerPassenger(itinerariesPerPassenger);
+    generator.write(file.getPath());
+    return file;
+  }
+}
@@ -0,0 +1,80 @@
+package mmt.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import mmt.TicketOffice;
+import mmt.exceptions.ImportFileException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to save the whole state as a snapshot and to load it back.
+ * Loading only reads the snapshot: its empty journal is removed, and loading writes nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersistenceBenchmark extends NetworkState {
+
+  private TicketOffice _office;
+
+  /** Office loading the file, so each load closes the journal of the previous one */
+  private TicketOffice _loaded = new TicketOffice();
+
+  private File _saveFile;
+  private File _loadFile;
+
+  @Setup
+  public void setUp() throws IOException, ClassNotFoundException, ImportFileException{
+    _office = new TicketOffice();
+    _office.importFile(writeImportFile().getPath());
+    _saveFile = File.createTempFile("mmt-bench", ".dat");
+    _loadFile = File.createTempFile("mmt-bench", ".dat");
+    TicketOffice saved = new TicketOffice();
+    saved.importFile(writeImportFile().getPath());
+    saved.save(_loadFile.getPath());
+    saved.reset();
+    new File(_loadFile.getPath() + ".journal").delete();
+  }
+
+  @TearDown
+  public void tearDown(){
+    _office.reset();
+    _loaded.reset();
+    delete(_saveFile);
+    delete(_loadFile);
+  }
+
+  private static void delete(File file){
+    new File(file.getPath() + ".journal").delete();
+    new File(file.getPath() + ".journal.old").delete();
+    file.delete();
+  }
+
+  @Benchmark
+  public TicketOffice save() throws IOException, ClassNotFoundException{
+    _office.save(_saveFile.getPath());
+    return _office;
+  }
+
+  @Benchmark
+  public TicketOffice load() throws IOException, ClassNotFoundException{
+    _loaded.load(_loadFile.getPath());
+    return _loaded;
+  }
+}
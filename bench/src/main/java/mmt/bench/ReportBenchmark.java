@@ -0,0 +1,81 @@
+package mmt.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import mmt.TicketOffice;
+import mmt.exceptions.ImportFileException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to render the itineraries of every passenger, as a String and streamed to a writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark extends NetworkState {
+
+  private TicketOffice _office;
+
+  @Setup
+  public void setUp() throws IOException, ImportFileException{
+    _office = new TicketOffice();
+    _office.importFile(writeImportFile().getPath());
+  }
+
+  @Benchmark
+  public String showAllItineraries(){
+    return _office.showAllItineraries();
+  }
+
+  @Benchmark
+  public long showAllItinerariesStreamed() throws IOException{
+    CountingWriter out = new CountingWriter();
+    _office.showAllItineraries(out, 0, Integer.MAX_VALUE);
+    return out._characters;
+  }
+
+  /** Writer that only counts the characters, so the rendering is measured without the output */
+  private static class CountingWriter extends Writer {
+    private long _characters;
+
+    @Override
+    public void write(char[] buffer, int offset, int length){
+      _characters += length;
+    }
+
+    @Override
+    public Writer append(CharSequence sequence){
+      _characters += sequence.length();
+      return this;
+    }
+
+    @Override
+    public Writer append(char character){
+      _characters++;
+      return this;
+    }
+
+    @Override
+    public void flush(){
+    }
+
+    @Override
+    public void close(){
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package mmt.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import mmt.Itinerary;
+import mmt.Service;
+import mmt.TicketOffice;
+import mmt.WorkloadGenerator;
+import mmt.exceptions.ImportFileException;
+import mmt.exceptions.NoSuchPassengerIdException;
+import mmt.exceptions.NoSuchStationNameException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a search between two random stations at a random time.
+ * The queries outnumber the entries of the search cache, so most of them are searched;
+ * searchRepeated asks the same question every time, measuring a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark extends NetworkState {
+
+  /** Number of different queries */
+  private static final int QUERIES = 1 << 14;
+
+  private TicketOffice _office;
+  private String[] _departureStations = new String[QUERIES];
+  private String[] _arrivalStations = new String[QUERIES];
+  private String[] _dates = new String[QUERIES];
+  private String[] _times = new String[QUERIES];
+  private int _next;
+
+  @Setup
+  public void setUp() throws IOException, ImportFileException{
+    _office = new TicketOffice();
+    _office.importFile(writeImportFile().getPath());
+    List<String> usedStations = new ArrayList<String>(stationNames());
+    Random random = new Random(seed + 1);
+    for(int i = 0; i < QUERIES; i++){
+      int departure = random.nextInt(usedStations.size());
+      int arrival = (departure + 1 + random.nextInt(usedStations.size() - 1)) % usedStations.size();
+      _departureStations[i] = usedStations.get(departure);
+      _arrivalStations[i] = usedStations.get(arrival);
+      _dates[i] = WorkloadGenerator.FIRST_DAY.plusDays(random.nextInt(WorkloadGenerator.DAYS)).toString();
+      _times[i] = String.format("%02d:%02d", 5 + random.nextInt(15), random.nextInt(60));
+    }
+  }
+
+  /** Names of the stations where some service stops, in order, since only those can be searched */
+  private Set<String> stationNames(){
+    Set<String> names = new TreeSet<String>();
+    for(Service service : _office.showAllServices()){
+      for(int i = 0; i < service.getNumberOfDepartures(); i++){
+        names.add(service.getStation(i));
+      }
+    }
+    return names;
+  }
+
+  @Benchmark
+  public Collection<Itinerary> search() throws NoSuchStationNameException, NoSuchPassengerIdException{
+    int i = _next++ & (QUERIES - 1);
+    return _office.search(0, _departureStations[i], _arrivalStations[i], _dates[i], _times[i]);
+  }
+
+  @Benchmark
+  public Collection<Itinerary> searchRepeated() throws NoSuchStationNameException, NoSuchPassengerIdException{
+    return _office.search(0, _departureStations[0], _arrivalStations[0], _dates[0], _times[0]);
+  }
+}
@@ -0,0 +1,51 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Earliest arrivals at many stations, with the journey of each row.
+ */
+public class ArrivalTableTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private TicketOffice _office;
+
+  @Before
+  public void setUp() throws Exception{
+    _office = new TicketOffice();
+    _office.importFile(Fixtures.write(_folder, "PASSENGER|Ana",
+      "SERVICE|1|100|08:00|A|09:00|B|10:00|C", "SERVICE|2|50|09:30|B|10:30|D",
+      "SERVICE|3|80|10:15|C|11:00|D", "SERVICE|4|200|08:30|A|12:00|D"));
+  }
+
+  @Test
+  public void buildsTheItineraryOfEachRow() throws Exception{
+    ArrivalTable table = _office.searchArrivals("A", new String[]{ "B", "D", "A" }, "2017-10-01", "07:00");
+    assertEquals(3, table.size());
+    assertEquals(1, table.getLegs(0));
+    assertEquals(9*60, table.getArrivalMinutes(0));
+    assertEquals("B", table.getItinerary(0).getServices().get(0).getStation(table.getItinerary(0).getArrivalPosition(0)));
+
+    assertEquals(2, table.getLegs(1));
+    assertEquals(8*60, table.getDepartureMinutes(1));
+    assertEquals(10*60 + 30, table.getArrivalMinutes(1));
+    Itinerary itinerary = table.getItinerary(1);
+    assertEquals(2, itinerary.getNumberOfLegs());
+    assertEquals(1, itinerary.getServices().get(0).getServiceID());
+    assertEquals(2, itinerary.getServices().get(1).getServiceID());
+    assertEquals(table.getPrice(1), itinerary.getItineraryPrice(), 1e-9);
+
+    assertFalse(table.isReachable(2));
+    assertEquals(0, table.getLegs(2));
+    assertNull(table.getItinerary(2));
+  }
+}
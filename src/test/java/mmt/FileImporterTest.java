@@ -0,0 +1,87 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import mmt.exceptions.ImportFileException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Itineraries of the import file which don't match its services.
+ */
+public class FileImporterTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void importsItineraries() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.importFile(Fixtures.write(_folder, "PASSENGER|Ana", "SERVICE|1|100|08:00|A|09:00|B|10:00|C",
+      "ITINERARY|0|2017-10-01|1/A/C"));
+    assertEquals(1, office.showPassengerById(0).getNumberOfItineraries());
+  }
+
+  @Test
+  public void importsAFileOfManyChunks() throws Exception{
+    String[] lines = new String[50000];
+    for(int i = 0; i < lines.length; i++){
+      lines[i] = "PASSENGER|P" + i;
+    }
+    TicketOffice office = new TicketOffice();
+    office.importFile(Fixtures.write(_folder, lines));
+    assertEquals(lines.length, office.showAllPassengers().size());
+    assertEquals("P" + (lines.length - 1), office.showPassengerById(lines.length - 1).getName());
+  }
+
+  @Test
+  public void itineraryKeepsTheServiceBeforeItIsReplaced() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.importFile(Fixtures.write(_folder, "PASSENGER|Ana", "SERVICE|1|100|08:00|A|09:00|B",
+      "ITINERARY|0|2017-10-01|1/A/B", "SERVICE|1|100|08:00|C|09:00|D"));
+    assertEquals("A", office.showPassengerById(0).getItineraries().get(0).getServices().get(0).getStation(0));
+    assertEquals("C", office.showServiceByID(1).getStation(0));
+  }
+
+  @Test
+  public void keepsTheItinerariesBeforeAFailingLine() throws Exception{
+    TicketOffice office = new TicketOffice();
+    try{
+      office.importFile(Fixtures.write(_folder, "PASSENGER|Ana", "SERVICE|1|100|08:00|A|09:00|B|10:00|C",
+        "ITINERARY|0|2017-10-01|1/A/C", "PASSENGER|Ana", "ITINERARY|0|2017-10-02|1/A/B"));
+      fail("The passenger name is repeated");
+    }
+    catch(ImportFileException e){
+      // expected
+    }
+    assertEquals(1, office.showPassengerById(0).getNumberOfItineraries());
+  }
+
+  @Test
+  public void rejectsStationOutsideTheService() throws Exception{
+    assertRejected("PASSENGER|Ana", "SERVICE|1|100|08:00|A|09:00|B|10:00|C", "ITINERARY|0|2017-10-01|1/A/D");
+  }
+
+  @Test
+  public void rejectsUnknownService() throws Exception{
+    assertRejected("PASSENGER|Ana", "SERVICE|1|100|08:00|A|09:00|B|10:00|C", "ITINERARY|0|2017-10-01|2/A/C");
+  }
+
+  @Test
+  public void rejectsUnknownPassenger() throws Exception{
+    assertRejected("PASSENGER|Ana", "SERVICE|1|100|08:00|A|09:00|B|10:00|C", "ITINERARY|1|2017-10-01|1/A/C");
+  }
+
+  private void assertRejected(String... lines) throws Exception{
+    try{
+      new TicketOffice().importFile(Fixtures.write(_folder, lines));
+      fail("The itinerary doesn't match the services");
+    }
+    catch(ImportFileException e){
+      // expected
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package mmt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Import files for the tests.
+ */
+final class Fixtures {
+
+  private Fixtures(){
+  }
+
+  /** Writes an import file with some lines
+   * @param folder
+   * @param lines
+   * @return String name of the file
+   * @throws IOException on error on writing the file
+   */
+  static String write(TemporaryFolder folder, String... lines) throws IOException{
+    File file = File.createTempFile("import", ".txt", folder.getRoot());
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    return file.getPath();
+  }
+
+  /** Writes an import file with a generated network of 40 stations, 4 of them hubs,
+   * 300 services of 6 stops and 20 passengers
+   * @param folder
+   * @param seed
+   * @return String name of the file
+   * @throws IOException on error on writing the file
+   */
+  static String generate(TemporaryFolder folder, long seed) throws IOException{
+    WorkloadGenerator generator = new WorkloadGenerator(seed);
+    generator.setStations(40);
+    generator.setHubs(4);
+    generator.setServices(300);
+    generator.setStopsPerService(6);
+    generator.setPassengers(20);
+    generator.setItinerariesPerPassenger(3);
+    File file = File.createTempFile("network", ".txt", folder.getRoot());
+    generator.write(file.getPath());
+    return file.getPath();
+  }
+
+  /** What the ticket office shows: the passengers, the services and the itineraries
+   * @param office
+   * @return String
+   */
+  static String render(TicketOffice office){
+    StringBuilder out = new StringBuilder();
+    for(Passenger passenger : office.showAllPassengers()){
+      out.append(passenger).append('\n');
+    }
+    for(Service service : office.showAllServices()){
+      out.append(service).append('\n');
+    }
+    out.append(office.showAllItineraries()).append('\n');
+    return out.toString();
+  }
+}
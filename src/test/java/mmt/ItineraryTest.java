@@ -0,0 +1,100 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Legs of an itinerary, as positions within their services.
+ */
+public class ItineraryTest {
+
+  private Service _service;
+
+  @Before
+  public void setUp(){
+    StationRegistry stations = new StationRegistry();
+    _service = new Service(3, 90, stations);
+    _service.addDeparture(stations.register("A"), 8*60);
+    _service.addDeparture(stations.register("B"), 9*60);
+    _service.addDeparture(stations.register("C"), 10*60);
+    _service.trimToSize();
+  }
+
+  @Test
+  public void keepsThePositionsOfEachLeg(){
+    Itinerary itinerary = new Itinerary(LocalDate.of(2017, 10, 1));
+    itinerary.addLeg(_service, 1, 2);
+    assertEquals(1, itinerary.getNumberOfLegs());
+    assertEquals(1, itinerary.getDeparturePosition(0));
+    assertEquals(2, itinerary.getArrivalPosition(0));
+    assertEquals(45, itinerary.getItineraryPrice(), 1e-9);
+    assertTrue(itinerary.toString().endsWith("\n09:00 B\n10:00 C"));
+  }
+
+  @Test
+  public void rejectsALegOutsideTheService(){
+    Itinerary itinerary = new Itinerary(LocalDate.of(2017, 10, 1));
+    try{
+      itinerary.addLeg(_service, 1, 3);
+      fail("The service has 3 departures");
+    }
+    catch(IndexOutOfBoundsException e){
+      // expected
+    }
+    assertEquals(0, itinerary.getNumberOfLegs());
+  }
+
+  @Test
+  public void readsTheLegsItWrote() throws Exception{
+    Itinerary itinerary = new Itinerary(LocalDate.of(2017, 10, 1));
+    itinerary.addLeg(_service, 0, 2);
+    Itinerary read = (Itinerary) read(write(itinerary));
+    assertEquals(itinerary.toString(), read.toString());
+    assertEquals(itinerary.getItineraryDate(), read.getItineraryDate());
+    assertEquals(itinerary.getItineraryPrice(), read.getItineraryPrice(), 1e-9);
+  }
+
+  @Test
+  public void rejectsALegOutsideTheServiceWhenReading() throws Exception{
+    Itinerary itinerary = new Itinerary(LocalDate.of(2017, 10, 1));
+    itinerary.addLeg(_service, 0, 2);
+    Field legStops = Itinerary.class.getDeclaredField("_legStops");
+    legStops.setAccessible(true);
+    legStops.set(itinerary, new int[]{0, 5});
+    byte[] written = write(itinerary);
+    try{
+      read(written);
+      fail("The service has 3 departures");
+    }
+    catch(InvalidObjectException e){
+      // expected
+    }
+  }
+
+  private static byte[] write(Object object) throws IOException{
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+      out.writeObject(object);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object read(byte[] bytes) throws IOException, ClassNotFoundException{
+    try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))){
+      return in.readObject();
+    }
+  }
+}
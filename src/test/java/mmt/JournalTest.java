@@ -0,0 +1,93 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Files saved as a snapshot and a journal of the changes made since, loaded back.
+ */
+public class JournalTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private String _file;
+
+  @Before
+  public void setUp(){
+    _file = new File(_folder.getRoot(), "office.dat").getPath();
+  }
+
+  @Test
+  public void loadsTheSnapshot() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.importFile(Fixtures.generate(_folder, 3));
+    office.save(_file);
+    assertTrue(Snapshot.isSnapshot(_file));
+
+    TicketOffice loaded = new TicketOffice();
+    loaded.load(_file);
+    assertEquals(Fixtures.render(office), Fixtures.render(loaded));
+  }
+
+  @Test
+  public void loadsTheChangesInTheJournal() throws Exception{
+    TicketOffice office = smallOffice();
+    office.save(_file);
+    office.registerPassenger("Eva");
+    office.changePassengerName(0, "Ana Maria");
+    assertFalse(office.search(2, "A", "D", "2017-10-01", "07:00").isEmpty());
+    office.commitItinerary(2, 1);
+    office.save();
+
+    TicketOffice loaded = new TicketOffice();
+    loaded.load(_file);
+    assertEquals(Fixtures.render(office), Fixtures.render(loaded));
+    assertEquals("Ana Maria", loaded.showPassengerById(0).getName());
+    assertEquals(1, loaded.showPassengerById(2).getNumberOfItineraries());
+  }
+
+  @Test
+  public void leavesOutTheChangesNotSaved() throws Exception{
+    TicketOffice office = smallOffice();
+    office.save(_file);
+    String saved = Fixtures.render(office);
+    office.registerPassenger("Eva");
+
+    TicketOffice loaded = new TicketOffice();
+    loaded.load(_file);
+    assertEquals(saved, Fixtures.render(loaded));
+  }
+
+  @Test
+  public void keepsSavingAfterLoading() throws Exception{
+    TicketOffice office = smallOffice();
+    office.save(_file);
+    TicketOffice loaded = new TicketOffice();
+    loaded.load(_file);
+    loaded.registerPassenger("Eva");
+    loaded.save();
+
+    TicketOffice reloaded = new TicketOffice();
+    reloaded.load(_file);
+    assertEquals(Fixtures.render(loaded), Fixtures.render(reloaded));
+    assertEquals("Eva", reloaded.showPassengerById(2).getName());
+  }
+
+  private TicketOffice smallOffice() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.importFile(Fixtures.write(_folder, "PASSENGER|Ana", "PASSENGER|Rui",
+      "SERVICE|1|100|08:00|A|09:00|B|10:00|C", "SERVICE|2|50|09:30|B|10:30|D",
+      "SERVICE|3|80|10:15|C|11:00|D", "SERVICE|4|200|08:30|A|12:00|D",
+      "ITINERARY|1|2017-10-02|4/A/D"));
+    return office;
+  }
+}
@@ -0,0 +1,78 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Files saved with Java serialization by the first version of the ticket office,
+ * before stations, services and itineraries changed their layout.
+ * baseline.ser was saved by that version after importing baseline.txt, and
+ * baseline-expected.txt has what it showed for it.
+ */
+public class LegacyFileTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void loadsBaselineFile() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.load(copyBaseline().getPath());
+    assertEquals(resource("baseline-expected.txt"), Fixtures.render(office));
+  }
+
+  @Test
+  public void searchesAfterLoadingBaselineFile() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.load(copyBaseline().getPath());
+    assertFalse(office.search(2, "A", "D", "2017-10-05", "07:00").isEmpty());
+    office.commitItinerary(2, 1);
+    assertEquals(1, office.showPassengerById(2).getNumberOfItineraries());
+  }
+
+  @Test
+  public void savesBaselineFileAsSnapshot() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.load(copyBaseline().getPath());
+    String snapshot = new File(_folder.getRoot(), "snapshot.dat").getPath();
+    office.save(snapshot);
+    assertTrue(Snapshot.isSnapshot(snapshot));
+
+    TicketOffice loaded = new TicketOffice();
+    loaded.load(snapshot);
+    assertEquals(resource("baseline-expected.txt"), Fixtures.render(loaded));
+  }
+
+  private File copyBaseline() throws IOException{
+    File file = new File(_folder.getRoot(), "baseline.ser");
+    try(InputStream in = LegacyFileTest.class.getResourceAsStream("baseline.ser")){
+      Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    return file;
+  }
+
+  private static String resource(String name) throws IOException{
+    try(InputStream in = LegacyFileTest.class.getResourceAsStream(name)){
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while((read = in.read(buffer)) > 0){
+        bytes.write(buffer, 0, read);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mmt.exceptions.NonUniquePassengerNameException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Passengers found by name, and names kept unique.
+ */
+public class PassengerDirectoryTest {
+
+  private TicketOffice _office;
+
+  @Before
+  public void setUp() throws Exception{
+    _office = new TicketOffice();
+    _office.registerPassenger("Rui");
+    _office.registerPassenger("Ana");
+    _office.registerPassenger("Anabela");
+    _office.registerPassenger("Andre");
+  }
+
+  @Test
+  public void findsThePassengersByPrefixSortedByName(){
+    assertEquals(names("Ana", "Anabela"), names(_office.findPassengersByNamePrefix("Ana")));
+    assertEquals(names("Ana", "Anabela", "Andre"), names(_office.findPassengersByNamePrefix("An")));
+    assertTrue(_office.findPassengersByNamePrefix("B").isEmpty());
+    assertEquals(4, _office.findPassengersByNamePrefix("").size());
+  }
+
+  @Test
+  public void rejectsANameInUse() throws Exception{
+    try{
+      _office.registerPassenger("Ana");
+      fail("Ana is already registered");
+    }
+    catch(NonUniquePassengerNameException e){
+      // expected
+    }
+    try{
+      _office.changePassengerName(0, "Andre");
+      fail("Andre is already registered");
+    }
+    catch(NonUniquePassengerNameException e){
+      // expected
+    }
+    assertEquals(4, _office.showAllPassengers().size());
+  }
+
+  @Test
+  public void renamingFreesTheOldName() throws Exception{
+    _office.changePassengerName(1, "Beatriz");
+    assertEquals(names("Anabela"), names(_office.findPassengersByNamePrefix("Ana")));
+    assertEquals(names("Beatriz"), names(_office.findPassengersByNamePrefix("Be")));
+    _office.registerPassenger("Ana");
+    assertEquals(names("Ana", "Anabela"), names(_office.findPassengersByNamePrefix("Ana")));
+  }
+
+  private static List<String> names(String... names){
+    return Arrays.asList(names);
+  }
+
+  private static List<String> names(Iterable<Passenger> passengers){
+    List<String> names = new ArrayList<String>();
+    for(Passenger passenger : passengers){
+      names.add(passenger.getName());
+    }
+    return names;
+  }
+}
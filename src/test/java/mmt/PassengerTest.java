@@ -0,0 +1,90 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Itineraries of a passenger, as they are shown, and the category they give.
+ */
+public class PassengerTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void numbersTheItinerariesByDate() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.importFile(Fixtures.write(_folder, "PASSENGER|Ana",
+      "SERVICE|1|100|08:00|A|09:00|B", "SERVICE|2|50|08:00|A|09:00|B",
+      "ITINERARY|0|2017-10-03|1/A/B", "ITINERARY|0|2017-10-01|2/A/B",
+      "ITINERARY|0|2017-10-02|1/A/B", "ITINERARY|0|2017-10-01|1/A/B"));
+    Passenger passenger = office.showPassengerById(0);
+    List<Itinerary> byDate = passenger.getItinerariesByDate();
+    assertEquals(LocalDate.of(2017, 10, 1), byDate.get(0).getItineraryDate());
+    assertEquals(50, byDate.get(0).getItineraryPrice(), 1e-9);
+    assertEquals(LocalDate.of(2017, 10, 1), byDate.get(1).getItineraryDate());
+    assertEquals(100, byDate.get(1).getItineraryPrice(), 1e-9);
+    assertEquals(LocalDate.of(2017, 10, 2), byDate.get(2).getItineraryDate());
+    assertEquals(LocalDate.of(2017, 10, 3), byDate.get(3).getItineraryDate());
+
+    List<String> headers = new ArrayList<String>();
+    for(String line : office.showItinerarybyPassenger(0).split("\n")){
+      if(line.startsWith("Itinerário "))
+        headers.add(line);
+    }
+    List<String> expected = new ArrayList<String>();
+    for(int i = 0; i < byDate.size(); i++){
+      expected.add(passenger.stringToItinerary(i + 1, byDate.get(i)));
+    }
+    assertEquals(expected, headers);
+    assertEquals("Itinerário 1 para 2017-10-01", headers.get(0).substring(0, headers.get(0).indexOf(" @")));
+  }
+
+  @Test
+  public void categoryFollowsTheLastTenItineraries() throws Exception{
+    List<String> lines = new ArrayList<String>();
+    lines.add("PASSENGER|Ana");
+    lines.add("SERVICE|1|300|08:00|A|09:00|B");
+    lines.add("SERVICE|2|10|08:00|A|09:00|B");
+    lines.add("ITINERARY|0|2017-10-01|1/A/B");
+    for(int i = 0; i < 9; i++){
+      lines.add("ITINERARY|0|2017-10-01|2/A/B");
+    }
+    TicketOffice office = new TicketOffice();
+    office.importFile(Fixtures.write(_folder, lines.toArray(new String[lines.size()])));
+    Passenger passenger = office.showPassengerById(0);
+    // ten itineraries, 300 + 9 * 10 in the window
+    assertEquals(390, passenger.getPaidValue(), 1e-9);
+    assertEquals(CategoryType.FREQUENT, passenger.getCategory());
+
+    Service cheap = office.showServiceByID(2);
+    Service dear = office.showServiceByID(1);
+    passenger.addItinerary(itinerary(cheap));
+    // the 300 left the window
+    assertEquals(100, passenger.getPaidValue(), 1e-9);
+    assertEquals(CategoryType.NORMAL, passenger.getCategory());
+
+    for(int i = 0; i < 8; i++){
+      passenger.addItinerary(itinerary(dear));
+    }
+    assertEquals(2 * 10 + 8 * 300, passenger.getPaidValue(), 1e-9);
+    assertEquals(CategoryType.FREQUENT, passenger.getCategory());
+    passenger.addItinerary(itinerary(dear));
+    assertEquals(10 + 9 * 300, passenger.getPaidValue(), 1e-9);
+    assertEquals(CategoryType.SPECIAL, passenger.getCategory());
+    assertEquals(20, passenger.getNumberOfItineraries());
+  }
+
+  private static Itinerary itinerary(Service service){
+    Itinerary itinerary = new Itinerary(LocalDate.of(2017, 10, 2));
+    itinerary.addLeg(service, 0, 1);
+    return itinerary;
+  }
+}
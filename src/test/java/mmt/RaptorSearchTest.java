@@ -0,0 +1,122 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Journeys found by the round-based search, compared with the connection scan
+ * and with the search exploring the first services in parallel.
+ */
+public class RaptorSearchTest {
+
+  private static final LocalDate DATE = LocalDate.of(2017, 10, 1);
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private TrainCompany _company;
+  private StationRegistry _stations;
+
+  @Before
+  public void setUp() throws Exception{
+    _company = new TrainCompany();
+    _company.importFile(Fixtures.generate(_folder, 17));
+    _stations = _company.getStationRegistry();
+  }
+
+  @Test
+  public void earliestJourneyArrivesAsTheConnectionScan(){
+    RaptorSearch raptor = new RaptorSearch(new StationIndex(_company.showAllServices()), _stations, _stations.size());
+    ConnectionScan scan = new ConnectionScan(_company.showAllServices(), _stations);
+    Random random = new Random(5);
+    int reachable = 0;
+    for(int i = 0; i < 200; i++){
+      int origin = random.nextInt(_stations.size());
+      int target = random.nextInt(_stations.size());
+      int minutes = 5*60 + random.nextInt(15*60);
+      List<Itinerary> journeys = raptor.search(_stations.getName(origin), _stations.getName(target), DATE,
+        LocalTime.of(minutes / 60, minutes % 60));
+      Itinerary earliest = scan.earliestArrival(origin, target, DATE, minutes);
+      if(earliest == null){
+        assertTrue(journeys.isEmpty());
+        continue;
+      }
+      reachable++;
+      assertFalse(journeys.isEmpty());
+      int arrival = Integer.MAX_VALUE;
+      for(Itinerary journey : journeys){
+        arrival = Math.min(arrival, journey.getArrivalMinutes());
+      }
+      assertEquals(earliest.getArrivalMinutes(), arrival);
+    }
+    assertTrue(reachable > 0);
+  }
+
+  @Test
+  public void unreachableStationHasNoJourneys(){
+    RaptorSearch raptor = new RaptorSearch(new StationIndex(_company.showAllServices()), _stations, RaptorSearch.DEFAULT_MAX_TRIPS);
+    ConnectionScan scan = new ConnectionScan(_company.showAllServices(), _stations);
+    String station = _stations.getName(0);
+    assertTrue(raptor.search(station, station, DATE, LocalTime.of(5, 0)).isEmpty());
+    assertTrue(raptor.search(station, _stations.getName(1), DATE, LocalTime.of(23, 59)).isEmpty());
+    assertNull(scan.earliestArrival(0, 1, DATE, 23*60 + 59));
+  }
+
+  @Test
+  public void parallelSearchFindsTheSameFrontier(){
+    RaptorSearch raptor = new RaptorSearch(new StationIndex(_company.showAllServices()), _stations, RaptorSearch.DEFAULT_MAX_TRIPS);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try{
+      Random random = new Random(9);
+      int found = 0;
+      for(int i = 0; i < 100; i++){
+        String origin = _stations.getName(random.nextInt(_stations.size()));
+        String target = _stations.getName(random.nextInt(_stations.size()));
+        LocalTime time = LocalTime.of(5 + random.nextInt(12), random.nextInt(60));
+        List<String> sequential = journeys(raptor.search(origin, target, DATE, time));
+        assertEquals(sequential, journeys(raptor.search(origin, target, DATE, time, null, pool)));
+        if(!sequential.isEmpty())
+          found++;
+      }
+      assertTrue(found > 0);
+    }
+    finally{
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void eachSearchReportsOnlyItsOwnWork(){
+    RaptorSearch raptor = new RaptorSearch(new StationIndex(_company.showAllServices()), _stations, RaptorSearch.DEFAULT_MAX_TRIPS);
+    SearchStatistics first = new SearchStatistics();
+    raptor.search(_stations.getName(0), _stations.getName(1), DATE, LocalTime.of(6, 0), first);
+    SearchStatistics second = new SearchStatistics();
+    raptor.search(_stations.getName(0), _stations.getName(1), DATE, LocalTime.of(6, 0), second);
+    assertTrue(first.getStopsScanned() > 0);
+    assertEquals(first.getStopsScanned(), second.getStopsScanned());
+    assertEquals(first.getLabelsGenerated(), second.getLabelsGenerated());
+  }
+
+  /** Each journey as the passenger sees it, with its services and stops */
+  private static List<String> journeys(List<Itinerary> itineraries){
+    List<String> journeys = new ArrayList<String>();
+    for(Itinerary itinerary : itineraries){
+      journeys.add(itinerary.toString());
+    }
+    return journeys;
+  }
+}
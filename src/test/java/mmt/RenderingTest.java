@@ -0,0 +1,64 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Services and itineraries written to an Appendable, whole and by pages.
+ */
+public class RenderingTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private TicketOffice _office;
+
+  @Before
+  public void setUp() throws Exception{
+    _office = new TicketOffice();
+    _office.importFile(Fixtures.generate(_folder, 3));
+  }
+
+  @Test
+  public void writesWhatToStringShows() throws Exception{
+    for(Service service : _office.showAllServices()){
+      StringBuilder out = new StringBuilder();
+      service.appendTo(out);
+      assertEquals(service.toString(), out.toString());
+    }
+    StringBuilder out = new StringBuilder();
+    _office.showAllItineraries(out, 0, Integer.MAX_VALUE);
+    assertEquals(_office.showAllItineraries(), out.toString());
+  }
+
+  @Test
+  public void pagesHoldTheItinerariesOfTheWholeList() throws Exception{
+    Passenger passenger = _office.showPassengerById(0);
+    String header = passenger.stringItinerary() + "\n";
+    String whole = _office.showItinerarybyPassenger(0);
+    assertTrue(passenger.getNumberOfItineraries() > 1);
+
+    StringBuilder pages = new StringBuilder(header);
+    for(int offset = 0; offset < passenger.getNumberOfItineraries(); offset++){
+      StringBuilder page = new StringBuilder();
+      _office.showItinerarybyPassenger(0, page, offset, 1);
+      assertTrue(page.toString().startsWith(header));
+      pages.append(page.substring(header.length()));
+    }
+    assertEquals(whole, pages.toString());
+  }
+
+  @Test
+  public void pageAfterTheLastItineraryIsEmpty() throws Exception{
+    StringBuilder page = new StringBuilder();
+    _office.showItinerarybyPassenger(0, page, _office.showPassengerById(0).getNumberOfItineraries(), 10);
+    assertEquals("", page.toString());
+    _office.showAllItineraries(page, 0, 0);
+    assertEquals("", page.toString());
+  }
+}
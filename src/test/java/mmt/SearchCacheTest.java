@@ -0,0 +1,82 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Searches answered from the cache, until the timetable changes.
+ */
+public class SearchCacheTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private TrainCompany _company;
+
+  @Before
+  public void setUp() throws Exception{
+    _company = new TrainCompany();
+    _company.importFile(Fixtures.write(_folder, "PASSENGER|Ana", "PASSENGER|Rui",
+      "SERVICE|1|100|08:00|A|09:00|B|10:00|C", "SERVICE|2|50|09:30|B|10:30|D",
+      "SERVICE|4|200|08:30|A|12:00|D"));
+  }
+
+  @Test
+  public void answersRepeatedSearchesFromTheCache() throws Exception{
+    List<Itinerary> first = new ArrayList<Itinerary>(_company.search(0, "A", "D", "2017-10-01", "07:00"));
+    List<Itinerary> second = new ArrayList<Itinerary>(_company.search(1, "A", "D", "2017-10-01", "07:00"));
+    assertEquals(1, _company.getSearchCache().getMisses());
+    assertEquals(1, _company.getSearchCache().getHits());
+    assertEquals(first.size(), second.size());
+    assertNotSame(first.get(0), second.get(0));
+    assertEquals(first.get(0).toString(), second.get(0).toString());
+  }
+
+  @Test
+  public void cachedSearchReportsNoWork() throws Exception{
+    SearchStatistics statistics = new SearchStatistics();
+    _company.search(0, "A", "D", "2017-10-01", "07:00", statistics);
+    assertFalse(statistics.isCacheHit());
+    assertTrue(statistics.getStopsScanned() > 0);
+    _company.search(1, "A", "D", "2017-10-01", "07:00", statistics);
+    assertTrue(statistics.isCacheHit());
+    assertEquals(0, statistics.getRounds());
+    assertEquals(0, statistics.getStopsScanned());
+    assertEquals(0, statistics.getLabelsGenerated());
+    assertEquals(0, statistics.getRoundsNanos());
+    assertEquals(0, statistics.getBuildNanos());
+  }
+
+  @Test
+  public void newServiceInvalidatesTheCache() throws Exception{
+    _company.search(0, "A", "D", "2017-10-01", "07:00");
+    _company.registerService(5, 10, new String[]{ "A", "D" }, new int[]{ 7*60 + 30, 8*60 });
+    assertEquals(0, _company.getSearchCache().size());
+
+    List<Itinerary> itineraries = new ArrayList<Itinerary>(_company.search(0, "A", "D", "2017-10-01", "07:00"));
+    assertEquals(2, _company.getSearchCache().getMisses());
+    assertEquals(1, itineraries.size());
+    assertEquals(5, itineraries.get(0).getServices().get(0).getServiceID());
+  }
+
+  @Test
+  public void dropsResultsOfAnOlderGeneration(){
+    SearchCache cache = new SearchCache(4);
+    long generation = cache.getGeneration();
+    cache.invalidate();
+    cache.put(0, 1, LocalDate.of(2017, 10, 1), 0, new ArrayList<Itinerary>(), generation);
+    assertNull(cache.get(0, 1, LocalDate.of(2017, 10, 1), 0));
+  }
+}
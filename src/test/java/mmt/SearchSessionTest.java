@@ -0,0 +1,108 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import mmt.exceptions.NoSuchItineraryChoiceException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Options of concurrent searches, kept apart by search sessions.
+ */
+public class SearchSessionTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private TicketOffice _office;
+
+  @Before
+  public void setUp() throws Exception{
+    _office = new TicketOffice();
+    _office.importFile(Fixtures.write(_folder, "PASSENGER|Ana", "PASSENGER|Rui",
+      "SERVICE|1|100|08:00|A|09:00|B|10:00|C", "SERVICE|2|50|09:30|B|10:30|D",
+      "SERVICE|3|80|10:15|C|11:00|D", "SERVICE|4|200|08:30|A|12:00|D"));
+  }
+
+  @Test
+  public void searchesOfOtherPassengersDontReplaceTheOptions() throws Exception{
+    _office.search(0, "A", "D", "2017-10-01", "07:00");
+    _office.search(1, "B", "C", "2017-10-01", "07:00");
+    assertFalse(_office.checksItineraries(0));
+    _office.commitItinerary(0, 1);
+    _office.commitItinerary(1, 1);
+    assertEquals(1, _office.showPassengerById(0).getNumberOfItineraries());
+    assertEquals("A", _office.showPassengerById(0).getItineraries().get(0).getServices().get(0).getStation(0));
+    assertEquals(1, _office.showPassengerById(1).getNumberOfItineraries());
+  }
+
+  @Test
+  public void commitsOnlyTheOptionsOfThePassenger() throws Exception{
+    _office.search(0, "A", "D", "2017-10-01", "07:00");
+    try{
+      _office.commitItinerary(1, 1);
+      fail("Passenger 1 has no options");
+    }
+    catch(NoSuchItineraryChoiceException e){
+      // expected
+    }
+    _office.commitItinerary(0, 1);
+    assertEquals(0, _office.showPassengerById(1).getNumberOfItineraries());
+  }
+
+  @Test
+  public void staleSessionDoesntCommitAnotherSession() throws Exception{
+    SearchSession stale = _office.searchSession(0, "A", "D", "2017-10-01", "07:00");
+    _office.save(new File(_folder.getRoot(), "office.dat").getPath());
+    _office.load(new File(_folder.getRoot(), "office.dat").getPath());
+    SearchSession session = _office.searchSession(1, "A", "D", "2017-10-01", "07:00");
+    assertEquals(stale.getSessionID(), session.getSessionID());
+    try{
+      _office.commitItinerary(stale, 1);
+      fail("The session belongs to the company before loading");
+    }
+    catch(NoSuchItineraryChoiceException e){
+      // expected
+    }
+    _office.commitItinerary(session, 1);
+    assertEquals(0, _office.showPassengerById(0).getNumberOfItineraries());
+    assertEquals(1, _office.showPassengerById(1).getNumberOfItineraries());
+  }
+
+  @Test
+  public void numbersTheOptionsOfThePassenger() throws Exception{
+    List<Itinerary> options = new ArrayList<Itinerary>(_office.search(0, "A", "D", "2017-10-01", "07:00"));
+    _office.search(1, "A", "D", "2017-10-01", "07:00");
+    assertEquals(1, _office.getItineraryIndex(0, options.get(0)));
+    assertEquals(2, _office.getItineraryIndex(0, options.get(1)));
+    assertEquals(0, _office.getItineraryIndex(1, options.get(0)));
+  }
+
+  @Test
+  public void tellsTheListenerOfTheEvictedSessions(){
+    final List<SearchSession> evicted = new ArrayList<SearchSession>();
+    SearchSessionStore store = new SearchSessionStore(1, 1, TimeUnit.MINUTES, new SearchSessionStore.EvictionListener(){
+      @Override
+      public void evicted(SearchSession session){
+        evicted.add(session);
+      }
+    });
+    SearchSession first = store.open(0, Collections.<Itinerary>emptyList());
+    SearchSession second = store.open(1, Collections.<Itinerary>emptyList());
+    assertEquals(Collections.singletonList(first), evicted);
+    assertTrue(store.close(second));
+    assertEquals(1, evicted.size());
+  }
+}
@@ -0,0 +1,79 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+/**
+ * Timetable of a service, kept by columns, and the prices and durations of its segments.
+ */
+public class ServiceTest {
+
+  @Test
+  public void addsDeparturesAfterTrimmingAnEmptyService(){
+    StationRegistry stations = new StationRegistry();
+    Service service = new Service(5, 10, stations);
+    service.trimToSize();
+    service.addDeparture(stations.register("A"), 8*60);
+    service.addDeparture(stations.register("B"), 9*60);
+    assertEquals(2, service.getNumberOfDepartures());
+    assertEquals("B", service.getStation(1));
+    assertEquals(9*60, service.getArrivalMinutes());
+  }
+
+  @Test
+  public void readsTheTimetableItWrote() throws Exception{
+    Service service = service();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+      out.writeObject(service);
+    }
+    try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))){
+      Service read = (Service) in.readObject();
+      assertEquals(service.toString(), read.toString());
+      assertEquals(2, read.getPosition(read.getStationID(2)));
+    }
+  }
+
+  @Test
+  public void pricesASegmentByItsMinutes(){
+    Service service = service();
+    assertEquals(210, service.segmentMinutes(1, 3));
+    assertEquals(Duration.ofMinutes(210), service.segmentDuration(1, 3));
+    assertEquals(120 * 210 / 240.0, service.segmentPrice(1, 3), 1e-9);
+    assertEquals(service.segmentPrice(service.getDeparture(1), service.getDeparture(3)), service.segmentPrice(1, 3), 1e-9);
+    assertEquals(service.getServicePrice(), service.segmentPrice(0, 3), 1e-9);
+    assertEquals(0, service.segmentPrice(2, 2), 1e-9);
+  }
+
+  @Test
+  public void pricesAnItineraryByItsLegs(){
+    Service service = service();
+    Itinerary itinerary = new Itinerary(LocalDate.of(2017, 10, 1));
+    itinerary.addLeg(service, 0, 1);
+    itinerary.addLeg(service, 2, 3);
+    assertEquals(service.segmentPrice(0, 1) + service.segmentPrice(2, 3), itinerary.getItineraryPrice(), 1e-9);
+    assertEquals(Duration.ofMinutes(240), itinerary.getItineraryDuration());
+    assertEquals(2, itinerary.getDeparturePosition(1));
+    assertEquals(3, itinerary.getArrivalPosition(1));
+  }
+
+  /** Service of 120 over 4 hours, stopping at A, B, C and D */
+  private static Service service(){
+    StationRegistry stations = new StationRegistry();
+    Service service = new Service(7, 120, stations);
+    service.addDeparture(stations.register("A"), 8*60);
+    service.addDeparture(stations.register("B"), 8*60 + 30);
+    service.addDeparture(stations.register("C"), 10*60);
+    service.addDeparture(stations.register("D"), 12*60);
+    service.trimToSize();
+    return service;
+  }
+}
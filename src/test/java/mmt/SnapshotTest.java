@@ -0,0 +1,73 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Categories of the passengers in a snapshot, kept by name whatever the category table in use.
+ */
+public class SnapshotTest {
+
+  private static final CategoryType SILVER = new CategoryType("PRATA", 0.95, 100);
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private CategoryTable _table;
+  private String _file;
+
+  @Before
+  public void setUp(){
+    _table = CategoryTable.getTable();
+    _file = new File(_folder.getRoot(), "office.dat").getPath();
+  }
+
+  @After
+  public void tearDown(){
+    CategoryTable.setTable(_table);
+  }
+
+  @Test
+  public void keepsTheCategoryWhenTiersAreAdded() throws Exception{
+    saveFrequentPassenger();
+    CategoryTable.setTable(new CategoryTable(Arrays.asList(CategoryType.NORMAL, SILVER, CategoryType.FREQUENT,
+      CategoryType.SPECIAL)));
+
+    TicketOffice loaded = new TicketOffice();
+    loaded.load(_file);
+    assertEquals(CategoryType.FREQUENT.getName(), loaded.showPassengerById(0).getCategory().getName());
+    assertEquals(CategoryType.NORMAL.getName(), loaded.showPassengerById(1).getCategory().getName());
+  }
+
+  @Test
+  public void failsOnUnknownCategory() throws Exception{
+    saveFrequentPassenger();
+    CategoryTable.setTable(new CategoryTable(Arrays.asList(CategoryType.NORMAL, CategoryType.SPECIAL)));
+    try{
+      new TicketOffice().load(_file);
+      fail("The category table has no frequent category");
+    }
+    catch(IOException e){
+      // expected
+    }
+  }
+
+  private void saveFrequentPassenger() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.importFile(Fixtures.write(_folder, "PASSENGER|Ana", "PASSENGER|Rui",
+      "SERVICE|4|200|08:30|A|12:00|D", "ITINERARY|0|2017-10-02|4/A/D", "ITINERARY|0|2017-10-03|4/A/D"));
+    assertEquals(CategoryType.FREQUENT, office.showPassengerById(0).getCategory());
+    office.save(_file);
+    office.reset();
+  }
+}
@@ -0,0 +1,82 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import mmt.TicketOfficeMetrics.Operation;
+import mmt.exceptions.NoSuchPassengerIdException;
+import mmt.exceptions.NonUniquePassengerNameException;
+
+import org.junit.Test;
+
+/**
+ * Calls, errors and latency histograms of the operations of the TicketOffice.
+ */
+public class TicketOfficeMetricsTest {
+
+  @Test
+  public void histogramCountsEveryLatency(){
+    LatencyHistogram histogram = new LatencyHistogram();
+    for(int i = 1; i <= 1000; i++){
+      histogram.record(i);
+    }
+    histogram.record(-5);
+    assertEquals(1001, histogram.getCount());
+    assertEquals(1000, histogram.getMax());
+    assertEquals(500500 / 1001.0, histogram.getMean(), 1e-9);
+    assertEquals(0, histogram.getPercentile(0));
+    assertEquals(1000, histogram.getPercentile(100));
+    long median = histogram.getPercentile(50);
+    assertTrue(median >= 500 && median <= 500 * 1.125);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void countsTheCallsAndErrorsOfEachOperation() throws Exception{
+    TicketOffice office = new TicketOffice();
+    office.registerPassenger("Ana");
+    try{
+      office.registerPassenger("Ana");
+      fail("Ana is already registered");
+    }
+    catch(NonUniquePassengerNameException e){
+      // expected
+    }
+    try{
+      office.showPassengerById(7);
+      fail("There is no passenger 7");
+    }
+    catch(NoSuchPassengerIdException e){
+      // expected
+    }
+    office.showPassengerById(0);
+    TicketOfficeMetrics metrics = office.getMetrics();
+    assertEquals(2, metrics.getCalls(Operation.REGISTER_PASSENGER));
+    assertEquals(1, metrics.getErrors(Operation.REGISTER_PASSENGER));
+    assertEquals(2, metrics.getCalls("SHOW_PASSENGER"));
+    assertEquals(1, metrics.getErrors("SHOW_PASSENGER"));
+    assertEquals(0, metrics.getCalls(Operation.SEARCH));
+    metrics.reset();
+    assertEquals(0, metrics.getCalls(Operation.REGISTER_PASSENGER));
+    assertEquals(0, metrics.getErrors(Operation.REGISTER_PASSENGER));
+  }
+
+  @Test
+  public void unregistersTheMBean() throws Exception{
+    TicketOfficeMetrics metrics = new TicketOfficeMetrics();
+    ObjectName name = metrics.registerMBean();
+    assertEquals(name, metrics.registerMBean());
+    assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    metrics.unregisterMBean();
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    metrics.unregisterMBean();
+  }
+}
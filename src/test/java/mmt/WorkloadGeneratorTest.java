@@ -0,0 +1,100 @@
+package mmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Import files of the synthetic workload generator.
+ */
+public class WorkloadGeneratorTest {
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void sameSeedGeneratesTheSameFile() throws Exception{
+    assertEquals(generate(11, 3), generate(11, 3));
+    assertEquals(generate(11, 0), generate(11, 0));
+    assertFalse(generate(11, 3).equals(generate(12, 3)));
+  }
+
+  @Test
+  public void generatedFileImports() throws Exception{
+    WorkloadGenerator generator = generator(4, 3);
+    File file = _folder.newFile("network.txt");
+    generator.write(file.getPath());
+    TicketOffice office = new TicketOffice();
+    office.importFile(file.getPath());
+    assertEquals(30, office.showAllPassengers().size());
+    assertEquals(200, office.showAllServices().size());
+    for(Passenger passenger : office.showAllPassengers()){
+      assertEquals(2, passenger.getNumberOfItineraries());
+    }
+  }
+
+  @Test
+  public void longestServicesEndBeforeMidnight() throws Exception{
+    WorkloadGenerator generator = generator(4, 0);
+    generator.setStations(300);
+    generator.setServices(20);
+    generator.setStopsPerService(WorkloadGenerator.MAXIMUM_STOPS_PER_SERVICE);
+    StringWriter out = new StringWriter();
+    generator.write(out);
+    int services = 0;
+    for(String line : out.toString().split("\n")){
+      if(!line.startsWith("SERVICE|"))
+        continue;
+      services++;
+      String[] fields = FileImporter.split(line, '|');
+      assertEquals(3 + 2 * WorkloadGenerator.MAXIMUM_STOPS_PER_SERVICE, fields.length);
+      int previous = -1;
+      for(int i = 3; i < fields.length; i += 2){
+        int minutes = FileImporter.parseMinutes(fields[i]);
+        assertTrue(minutes > previous);
+        previous = minutes;
+      }
+    }
+    assertEquals(20, services);
+  }
+
+  @Test
+  public void rejectsMoreStopsThanFitInADay() throws Exception{
+    WorkloadGenerator generator = generator(4, 0);
+    generator.setStations(300);
+    generator.setStopsPerService(WorkloadGenerator.MAXIMUM_STOPS_PER_SERVICE + 1);
+    try{
+      generator.write(new StringWriter());
+      fail("The last stops would be after midnight");
+    }
+    catch(IllegalArgumentException e){
+      // expected
+    }
+  }
+
+  private static String generate(long seed, int hubs) throws Exception{
+    StringWriter out = new StringWriter();
+    generator(seed, hubs).write(out);
+    return out.toString();
+  }
+
+  /** Generator of 60 stations, 200 services of 5 stops and 30 passengers with 2 itineraries each */
+  private static WorkloadGenerator generator(long seed, int hubs){
+    WorkloadGenerator generator = new WorkloadGenerator(seed);
+    generator.setStations(60);
+    generator.setHubs(hubs);
+    generator.setServices(200);
+    generator.setStopsPerService(5);
+    generator.setPassengers(30);
+    generator.setItinerariesPerPassenger(2);
+    return generator;
+  }
+}